@@ -0,0 +1,119 @@
+package chess;
+
+import chess.moves.MoveGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Move generation and game state checks, measured on a few positions of different density
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveBenchmark {
+
+    @Param({"start", "kiwipete", "position3"})
+    public String position;
+
+    private ChessGame game;
+    private List<ChessPosition> pieces;
+    private ChessMove move;
+    private final int[] buffer = new int[MoveGenerator.MAX_MOVES];
+
+    @Setup
+    public void setup() {
+        var fen = Perft.POSITIONS.stream()
+                .filter(p -> p.name().equals(position))
+                .findFirst()
+                .orElseThrow()
+                .fen();
+        game = Fen.parse(fen);
+        pieces = new ArrayList<>();
+        for (var square : game.getBoard().chessSquareCollection(game.getTeamTurn())) {
+            pieces.add(square.getPosition());
+        }
+        move = Perft.legalMoves(game).getFirst();
+    }
+
+    /**
+     * All legal moves for the side to move, as the client's legal move display computes them
+     */
+    @Benchmark
+    public void validMoves(Blackhole blackhole) {
+        for (var position : pieces) {
+            blackhole.consume(game.validMoves(position));
+        }
+    }
+
+    /**
+     * All legal moves for the side to move through the packed move API
+     */
+    @Benchmark
+    public int generateLegalMoves() {
+        return game.generateLegalMoves(buffer);
+    }
+
+    /**
+     * Validating and playing one move on a fresh copy, as the server does for every move it receives
+     */
+    @Benchmark
+    public ChessGame makeMove() throws InvalidMoveException {
+        var copy = new ChessGame();
+        copy.setBoard(game.getBoard());
+        copy.setTeamTurn(game.getTeamTurn());
+        copy.makeMove(move);
+        return copy;
+    }
+
+    /**
+     * Playing and taking back one move in place
+     */
+    @Benchmark
+    public long makeUnmakeMove() {
+        var board = game.getBoard();
+        board.makeMove(move);
+        var key = board.positionKey();
+        board.unmakeMove();
+        return key;
+    }
+
+    @Benchmark
+    public boolean isInCheckmate() {
+        return game.isInCheckmate(game.getTeamTurn());
+    }
+
+    @Benchmark
+    public boolean isInStalemate() {
+        return game.isInStalemate(game.getTeamTurn());
+    }
+
+    /**
+     * The single pass status check the server runs after every move
+     */
+    @Benchmark
+    public GameStatus evaluateStatus() {
+        return game.evaluateStatus();
+    }
+
+    @Benchmark
+    public ChessBoard copyBoard() {
+        return new ChessBoard(game.getBoard());
+    }
+}
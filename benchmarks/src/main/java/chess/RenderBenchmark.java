@@ -0,0 +1,59 @@
+package chess;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text rendering of the board, as the client draws it after every update
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+
+    private ChessBoard board;
+    private Collection<ChessPosition> highlights;
+
+    @Setup
+    public void setup() {
+        var game = Fen.parse(Perft.POSITIONS.get(1).fen());
+        board = game.getBoard();
+        highlights = new ArrayList<>();
+        var queen = new ChessPosition(3, 6);
+        highlights.add(queen);
+        for (var move : game.validMoves(queen)) {
+            highlights.add(move.getEndPosition());
+        }
+    }
+
+    @Benchmark
+    public String white() {
+        return board.toString(ChessGame.TeamColor.WHITE, List.of());
+    }
+
+    @Benchmark
+    public String black() {
+        return board.toString(ChessGame.TeamColor.BLACK, List.of());
+    }
+
+    @Benchmark
+    public String highlighted() {
+        return board.toString(ChessGame.TeamColor.WHITE, highlights);
+    }
+}
@@ -0,0 +1,78 @@
+package chess;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gson and binary round trips of a game, which the server does on every load and store, at different
+ * game lengths
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"0", "40", "120"})
+    public int plies;
+
+    private ChessGame game;
+    private String json;
+    private byte[] binary;
+
+    @Setup
+    public void setup() throws InvalidMoveException {
+        game = new ChessGame();
+        for (var i = 0; i < plies; i++) {
+            var moves = Perft.legalMoves(game);
+            if (moves.isEmpty()) {
+                break;
+            }
+            // Deterministic but varied play so the history and captures look like a real game
+            game.makeMove(moves.get((i * 7) % moves.size()));
+        }
+        json = game.toString();
+        binary = GameCodec.encode(game);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return game.toString();
+    }
+
+    @Benchmark
+    public ChessGame deserialize() {
+        return ChessGame.createGame(json);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return GameCodec.encode(game);
+    }
+
+    @Benchmark
+    public ChessGame decode() {
+        return GameCodec.decode(binary);
+    }
+
+    /**
+     * Deserializing includes rebuilding the board's derived state on first use
+     */
+    @Benchmark
+    public long deserializeAndIndex() {
+        return ChessGame.createGame(json).positionKey();
+    }
+}
@@ -142,7 +142,7 @@ public class ChessClient implements DisplayHandler {
                     var color = ChessGame.TeamColor.valueOf(params[1].toUpperCase());
                     var gameData = server.joinGame(token, gameId, color);
                     state = (color == ChessGame.TeamColor.WHITE ? State.WHITE : State.BLACK);
-                    webSocket.sendCommand(new JoinPlayerCommand(token, gameId, color));
+                    webSocket.sendCommand(new JoinPlayerCommand(token, gameId, color, true));
 
                     return String.format("Joined game %d as %s", gameData.gameID(), color);
                 } else {
@@ -166,7 +166,7 @@ public class ChessClient implements DisplayHandler {
                 if (games != null && gamePosition >= 0 && gamePosition < games.length) {
                     var gameId = games[gamePosition].gameID();
                     state = State.OBSERVING;
-                    webSocket.sendCommand(new GameCommand(UserGameCommand.CommandType.CONNECT, token, gameId));
+                    webSocket.sendCommand(new JoinPlayerCommand(token, gameId, null, true));
                     return String.format("Observing game %d", gameId);
                 }
             } else {
@@ -249,17 +249,7 @@ public class ChessClient implements DisplayHandler {
     }
 
     public boolean isMoveLegal(ChessMove move) {
-        if (isTurn()) {
-            var board = gameData.game().getBoard();
-            var piece = board.getPiece(move.getStartPosition());
-            if (piece != null) {
-                var validMoves = piece.pieceMoves(board, move.getStartPosition());
-                if (validMoves.contains(move)) {
-                    return board.isLegalMove(move);
-                }
-            }
-        }
-        return false;
+        return isTurn() && gameData.game().isLegalMove(move);
     }
 
     // Print function helpers
@@ -1,8 +1,12 @@
 package ui;
 
+import chess.InvalidMoveException;
 import com.google.gson.Gson;
+import model.GameData;
+import websocket.commands.UserGameCommand;
 import websocket.messages.ErrorMessage;
 import websocket.messages.LoadMessage;
+import websocket.messages.MoveAppliedMessage;
 import websocket.messages.NotificationMessage;
 import websocket.messages.ServerMessage;
 import websocket.commands.GameCommand;
@@ -15,6 +19,11 @@ import java.net.URISyntaxException;
 public class WebSocketFacade extends Endpoint {
     Session session;
     DisplayHandler displayHandler;
+    String authToken;
+    // The last game the server sent, kept up to date by MOVE_APPLIED deltas
+    GameData game;
+    // Set once a RESYNC is sent; deltas are ignored until the LOAD_GAME that answers it
+    boolean resyncPending;
 
     public WebSocketFacade(String serverName, DisplayHandler displayHandler) throws DeploymentException, IOException, URISyntaxException {
         var url = String.format("ws://%s/ws", serverName);
@@ -32,7 +41,8 @@ public class WebSocketFacade extends Endpoint {
                 try {
                     ServerMessage serverMessage = new Gson().fromJson(message, ServerMessage.class);
                     switch (serverMessage.getType()) {
-                        case LOAD_GAME -> displayHandler.updateBoard(gson.fromJson(message, LoadMessage.class).game);
+                        case LOAD_GAME -> loadGame(gson.fromJson(message, LoadMessage.class).game);
+                        case MOVE_APPLIED -> applyMove(gson.fromJson(message, MoveAppliedMessage.class));
                         case ERROR -> displayHandler.error(gson.fromJson(message, ErrorMessage.class).errorMessage);
                         case NOTIFICATION -> displayHandler.message(gson.fromJson(message, NotificationMessage.class).message);
                     }
@@ -48,7 +58,47 @@ public class WebSocketFacade extends Endpoint {
     public void onOpen(Session session, EndpointConfig config) {}
 
     public void sendCommand(GameCommand command) throws IOException {
+        this.authToken = command.getAuthString();
         this.session.getBasicRemote().sendText(new Gson().toJson(command));
     }
 
+    private void loadGame(GameData gameData) {
+        game = gameData;
+        resyncPending = false;
+        displayHandler.updateBoard(gameData);
+    }
+
+    /**
+     * Plays a move the server reported on the local copy of the game. If the copy is missing a
+     * move or ends up in a different position than the server's, the full game is requested
+     * instead, and further moves are skipped until it arrives.
+     */
+    private void applyMove(MoveAppliedMessage message) throws IOException {
+        if (resyncPending) {
+            return;
+        }
+        if (game == null || game.gameID() != message.gameID
+                || game.game().getBoard().getHistory().size() + 1 != message.ply) {
+            resync(message.gameID);
+            return;
+        }
+        try {
+            game.game().makeMove(message.getMove());
+        } catch (InvalidMoveException e) {
+            resync(message.gameID);
+            return;
+        }
+        if (!MoveAppliedMessage.positionKey(game.game()).equals(message.positionKey)) {
+            resync(message.gameID);
+            return;
+        }
+        game = game.setState(message.state);
+        displayHandler.updateBoard(game);
+    }
+
+    private void resync(int gameID) throws IOException {
+        game = null;
+        resyncPending = true;
+        sendCommand(new GameCommand(UserGameCommand.CommandType.RESYNC, authToken, gameID));
+    }
 }
@@ -0,0 +1,146 @@
+package dataaccess;
+
+import model.AuthData;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps recently validated authentication tokens in memory so that most token checks don't
+ * query the database.
+ * <p>
+ * The cache holds at most {@code maxSize} tokens, dropping the least recently used, and a token
+ * is looked up again once it has been cached for longer than the time to live. Deleting a token
+ * or clearing the data removes it from the cache before the call returns. Unknown tokens are
+ * not cached.
+ */
+public class AuthCacheDataAccess extends DelegatingDataAccess {
+    /**
+     * @param hits      lookups answered from the cache
+     * @param misses    lookups passed on to the database
+     * @param evictions tokens dropped to stay within the size bound
+     * @param size      tokens currently cached
+     */
+    public record Stats(long hits, long misses, long evictions, int size) {
+        public double hitRate() {
+            var total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private record Entry(AuthData auth, long expires) {
+    }
+
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final Map<String, Entry> cache;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    // Bumped by every invalidation, so a lookup that raced with one doesn't cache what it read
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public AuthCacheDataAccess(DataAccess delegate, Duration ttl, int maxSize) {
+        this(delegate, ttl, maxSize, System::nanoTime);
+    }
+
+    AuthCacheDataAccess(DataAccess delegate, Duration ttl, int maxSize, LongSupplier clock) {
+        super(delegate);
+        this.ttlNanos = ttl.toNanos();
+        this.clock = clock;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public AuthData writeAuth(String username) throws DataAccessException {
+        var auth = delegate.writeAuth(username);
+        if (auth != null) {
+            put(auth, invalidations.get());
+        }
+        return auth;
+    }
+
+    public AuthData readAuth(String token) throws DataAccessException {
+        if (token == null) {
+            return delegate.readAuth(null);
+        }
+        var now = clock.getAsLong();
+        synchronized (cache) {
+            var entry = cache.get(token);
+            if (entry != null) {
+                if (now - entry.expires() < 0) {
+                    hits.incrementAndGet();
+                    return entry.auth();
+                }
+                cache.remove(token);
+            }
+        }
+        misses.incrementAndGet();
+
+        var version = invalidations.get();
+        var auth = delegate.readAuth(token);
+        if (auth != null) {
+            put(auth, version);
+        }
+        return auth;
+    }
+
+    public void deleteAuth(String token) throws DataAccessException {
+        invalidate(token);
+        try {
+            delegate.deleteAuth(token);
+        } finally {
+            invalidate(token);
+        }
+    }
+
+    public void clear() throws DataAccessException {
+        invalidateAll();
+        try {
+            delegate.clear();
+        } finally {
+            invalidateAll();
+        }
+    }
+
+    public Stats stats() {
+        synchronized (cache) {
+            return new Stats(hits.get(), misses.get(), evictions.get(), cache.size());
+        }
+    }
+
+    private void put(AuthData auth, long version) {
+        var expires = clock.getAsLong() + ttlNanos;
+        synchronized (cache) {
+            if (invalidations.get() == version) {
+                cache.put(auth.authToken(), new Entry(auth, expires));
+            }
+        }
+    }
+
+    private void invalidate(String token) {
+        synchronized (cache) {
+            invalidations.incrementAndGet();
+            cache.remove(token);
+        }
+    }
+
+    private void invalidateAll() {
+        synchronized (cache) {
+            invalidations.incrementAndGet();
+            cache.clear();
+        }
+    }
+}
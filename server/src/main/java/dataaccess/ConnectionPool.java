@@ -0,0 +1,337 @@
+package dataaccess;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of JDBC connections, so that DAO calls reuse open connections instead of paying
+ * for a TCP connect and authentication handshake every time.
+ * <p>
+ * Borrowed connections are proxies: closing one returns the underlying connection to the pool.
+ * The statements, result sets and metadata they hand out are proxied too, so that their
+ * {@code getConnection()} returns the pooled connection rather than the physical one, which would
+ * bypass the pool when closed.
+ * <p>
+ * Idle connections are handed out most recently used first and are checked with
+ * {@link Connection#isValid} before reuse unless they were returned very recently. Connections
+ * idle for longer than the idle timeout are closed by a background timer, and when the pool is
+ * next used.
+ */
+public class ConnectionPool implements AutoCloseable {
+    /**
+     * Opens new physical connections
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    /**
+     * A snapshot of the pool's counters
+     *
+     * @param active         connections currently borrowed
+     * @param idle           open connections waiting in the pool
+     * @param borrowed       total number of successful borrows
+     * @param created        total number of physical connections opened
+     * @param evicted        connections closed for being idle too long or failing validation
+     * @param timeouts       borrows that gave up waiting for a free connection
+     * @param totalWaitNanos time spent waiting for a free connection, over all borrows
+     * @param maxWaitNanos   longest single wait for a free connection
+     */
+    public record Metrics(int active, int idle, long borrowed, long created, long evicted, long timeouts,
+                          long totalWaitNanos, long maxWaitNanos) {
+        public double averageWaitMillis() {
+            return borrowed == 0 ? 0 : totalWaitNanos / 1e6 / borrowed;
+        }
+    }
+
+    // Connections returned this recently are trusted without a validation round trip
+    private static final long VALIDATION_BYPASS_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final long maxWaitNanos;
+    private final long idleTimeoutNanos;
+    private final Semaphore permits;
+    private final Deque<Idle> idle = new ArrayDeque<>();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong totalWait = new AtomicLong();
+    private final AtomicLong maxWait = new AtomicLong();
+
+    private record Idle(Connection connection, long since) {
+    }
+
+    /**
+     * @param factory     opens new physical connections
+     * @param maxSize     most connections open at once, borrowed or idle
+     * @param maxWait     how long a borrow waits for a free connection before failing
+     * @param idleTimeout how long a connection may sit unused before it is closed
+     */
+    public ConnectionPool(ConnectionFactory factory, int maxSize, Duration maxWait, Duration idleTimeout) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.permits = new Semaphore(maxSize, true);
+        this.evictor = startEvictor();
+    }
+
+    /**
+     * Borrows a connection. Close it to give it back.
+     *
+     * @return a pooled connection
+     * @throws SQLException if no connection becomes free in time or a new one cannot be opened
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        var start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLException(String.format("Timed out waiting for a database connection (%d in use)", maxSize));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a database connection", e);
+        }
+        var waited = System.nanoTime() - start;
+        totalWait.addAndGet(waited);
+        maxWait.accumulateAndGet(waited, Math::max);
+
+        try {
+            var connection = takeIdle();
+            if (connection == null) {
+                connection = factory.create();
+                created.incrementAndGet();
+            }
+            active.incrementAndGet();
+            borrowed.incrementAndGet();
+            return wrap(connection);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the connections that have been idle longer than the idle timeout
+     */
+    public void evictIdle() {
+        var now = System.nanoTime();
+        while (true) {
+            Idle oldest;
+            synchronized (idle) {
+                oldest = idle.peekLast();
+                if (oldest == null || now - oldest.since() < idleTimeoutNanos) {
+                    return;
+                }
+                idle.pollLast();
+            }
+            evicted.incrementAndGet();
+            closeQuietly(oldest.connection());
+        }
+    }
+
+    public Metrics metrics() {
+        int idleCount;
+        synchronized (idle) {
+            idleCount = idle.size();
+        }
+        return new Metrics(active.get(), idleCount, borrowed.get(), created.get(), evicted.get(), timeouts.get(),
+                totalWait.get(), maxWait.get());
+    }
+
+    /**
+     * Closes the idle connections and stops lending new ones. Borrowed connections are closed as
+     * they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        while (true) {
+            Idle entry;
+            synchronized (idle) {
+                entry = idle.pollFirst();
+            }
+            if (entry == null) {
+                return;
+            }
+            closeQuietly(entry.connection());
+        }
+    }
+
+    /**
+     * Checks for idle connections at half the idle timeout, so that a pool nobody borrows from
+     * still lets go of its connections
+     */
+    private ScheduledExecutorService startEvictor() {
+        if (idleTimeoutNanos <= 0) {
+            return null;
+        }
+        var evictor = Executors.newSingleThreadScheduledExecutor(task -> {
+            var thread = new Thread(task, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var period = Math.max(idleTimeoutNanos / 2, TimeUnit.MILLISECONDS.toNanos(1));
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.NANOSECONDS);
+        return evictor;
+    }
+
+    private Connection takeIdle() {
+        evictIdle();
+        while (true) {
+            Idle entry;
+            synchronized (idle) {
+                entry = idle.pollFirst();
+            }
+            if (entry == null) {
+                return null;
+            }
+            if (isUsable(entry)) {
+                return entry.connection();
+            }
+            evicted.incrementAndGet();
+            closeQuietly(entry.connection());
+        }
+    }
+
+    private void release(Connection connection) {
+        active.decrementAndGet();
+        try {
+            if (closed || connection.isClosed()) {
+                closeQuietly(connection);
+                return;
+            }
+            // Don't hand a half finished transaction to the next borrower
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            synchronized (idle) {
+                idle.addFirst(new Idle(connection, System.nanoTime()));
+            }
+        } catch (SQLException e) {
+            closeQuietly(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Connection wrap(Connection connection) {
+        var returned = new boolean[1];
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close" -> {
+                            synchronized (returned) {
+                                if (!returned[0]) {
+                                    returned[0] = true;
+                                    release(connection);
+                                }
+                            }
+                            return null;
+                        }
+                        case "isClosed" -> {
+                            synchronized (returned) {
+                                return returned[0] || connection.isClosed();
+                            }
+                        }
+                        case "equals" -> {
+                            return proxy == args[0];
+                        }
+                        case "hashCode" -> {
+                            return System.identityHashCode(proxy);
+                        }
+                        case "toString" -> {
+                            return "Pooled" + connection;
+                        }
+                    }
+                    synchronized (returned) {
+                        if (returned[0]) {
+                            throw new SQLException("Connection has been returned to the pool");
+                        }
+                    }
+                    return shield(invoke(connection, method, args), method.getReturnType(), (Connection) proxy);
+                });
+    }
+
+    /**
+     * Wraps the JDBC objects a pooled connection hands out, so that none of them leads back to
+     * the physical connection
+     */
+    private static Object shield(Object result, Class<?> type, Connection pooled) {
+        if (result != null && type == Connection.class) {
+            return pooled;
+        }
+        if (result == null || !(Statement.class.isAssignableFrom(type) || type == ResultSet.class
+                || type == DatabaseMetaData.class)) {
+            return result;
+        }
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> shield(invoke(result, method, args), method.getReturnType(), pooled);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static boolean isUsable(Idle entry) {
+        try {
+            if (entry.connection().isClosed()) {
+                return false;
+            }
+            return System.nanoTime() - entry.since() < VALIDATION_BYPASS_NANOS
+                    || entry.connection().isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package dataaccess;
 
+import chess.ChessMove;
 import model.AuthData;
 import model.UserData;
 import model.GameData;
@@ -80,6 +81,25 @@ public interface DataAccess {
      */
     GameData readGame(int gameID) throws DataAccessException;
 
+    /**
+     * Records a move made in a game. Rather than rewriting the whole game, the move is appended
+     * to the game's move log; the stored game is only rewritten as a snapshot every few moves and
+     * when the move ends the game.
+     * @param game the game with the move applied
+     * @param move the move that was made
+     * @throws DataAccessException
+     */
+    void appendMove(GameData game, ChessMove move) throws DataAccessException;
+
+    /**
+     * Loads the current state of a game: the latest snapshot with any moves logged since replayed
+     * on top of it
+     * @param gameID
+     * @return the game, or null if there is no such game
+     * @throws DataAccessException
+     */
+    GameData loadGame(int gameID) throws DataAccessException;
+
     /**
      * Lists all games in the database
      * @return a collection of all games
@@ -1,13 +1,24 @@
 package dataaccess;
 
 import java.sql.*;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class DatabaseManager {
+    // Connector/J keeps server-side prepared statements open per connection and reuses them when the
+    // same SQL is prepared again, so repeated queries skip the parse and plan round trip
+    private static final String STATEMENT_CACHE_OPTIONS =
+            "cachePrepStmts=true&useServerPrepStmts=true&prepStmtCacheSize=64&prepStmtCacheSqlLimit=2048";
+
     private static final String DB_NAME;
     private static final String USER;
     private static final String PASSWORD;
     private static final String CONNECTION_URL;
+    private static final ConnectionPool POOL;
+    private static final List<String> PREPARED_STATEMENTS = new CopyOnWriteArrayList<>();
 
     /**
      * Load the database info
@@ -24,7 +35,12 @@ public class DatabaseManager {
                 var host = properties.getProperty("db.host");
                 var port = Integer.parseInt(properties.getProperty("db.port"));
 
-                CONNECTION_URL = String.format("jdbc:mysql://%s:%d", host, port);
+                CONNECTION_URL = String.format("jdbc:mysql://%s:%d?%s", host, port, STATEMENT_CACHE_OPTIONS);
+
+                var maxSize = Integer.parseInt(properties.getProperty("db.pool.maxSize", "10"));
+                var maxWait = Duration.ofMillis(Long.parseLong(properties.getProperty("db.pool.maxWaitMillis", "5000")));
+                var idleTimeout = Duration.ofMillis(Long.parseLong(properties.getProperty("db.pool.idleTimeoutMillis", "600000")));
+                POOL = new ConnectionPool(DatabaseManager::openConnection, maxSize, maxWait, idleTimeout);
             }
         } catch (Exception e) {
             throw new RuntimeException("Error loading database properties: " + e.getMessage());
@@ -35,29 +51,73 @@ public class DatabaseManager {
      * Creates the database if it does not exist
      */
     static void createDatabase() throws DataAccessException {
-        try {
-            var sqlStatement = String.format("CREATE DATABASE IF NOT EXISTS %s", DB_NAME);
-            var conn = DriverManager.getConnection(CONNECTION_URL, USER, PASSWORD);
-            try (var preparedStatement = conn.prepareStatement(sqlStatement)) {
-                preparedStatement.executeUpdate();
-            }
+        var sqlStatement = String.format("CREATE DATABASE IF NOT EXISTS %s", DB_NAME);
+        try (var conn = DriverManager.getConnection(CONNECTION_URL, USER, PASSWORD);
+             var preparedStatement = conn.prepareStatement(sqlStatement)) {
+            preparedStatement.executeUpdate();
         } catch (SQLException e) {
             throw new DataAccessException("Error creating database: " + e.getMessage());
         }
     }
 
     /**
-     * Connects to the database
+     * Borrows a connection from the pool. Closing the connection returns it to the pool.
      * @return the connection
      * @throws DataAccessException if there is an error connecting to the database
      */
     static Connection getConnection() throws DataAccessException {
         try {
-            var conn = DriverManager.getConnection(CONNECTION_URL, USER, PASSWORD);
-            conn.setCatalog(DB_NAME);
-            return conn;
+            return POOL.getConnection();
         } catch (SQLException e) {
             throw new DataAccessException("Error connecting to database: " + e.getMessage());
         }
     }
+
+    /**
+     * Registers queries to prepare on every pooled connection as soon as it is opened, so that
+     * they are in the connection's statement cache before their first use. The tables they refer
+     * to must already exist.
+     *
+     * @param statements the SQL text of the queries
+     * @throws DataAccessException if a query cannot be prepared
+     */
+    static void registerStatements(Collection<String> statements) throws DataAccessException {
+        for (var sql : statements) {
+            if (!PREPARED_STATEMENTS.contains(sql)) {
+                PREPARED_STATEMENTS.add(sql);
+            }
+        }
+        // Warm the connection that is already idle in the pool as well
+        try (var conn = getConnection()) {
+            prepareStatements(conn, statements);
+        } catch (SQLException e) {
+            throw new DataAccessException("Error preparing statements: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the connection pool's current counters
+     */
+    public static ConnectionPool.Metrics poolMetrics() {
+        return POOL.metrics();
+    }
+
+    private static Connection openConnection() throws SQLException {
+        var conn = DriverManager.getConnection(CONNECTION_URL, USER, PASSWORD);
+        try {
+            conn.setCatalog(DB_NAME);
+            prepareStatements(conn, PREPARED_STATEMENTS);
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        return conn;
+    }
+
+    private static void prepareStatements(Connection conn, Collection<String> statements) throws SQLException {
+        for (var sql : statements) {
+            // Closing a cached statement hands it back to the connection's cache
+            conn.prepareStatement(sql).close();
+        }
+    }
 }
@@ -0,0 +1,68 @@
+package dataaccess;
+
+import chess.ChessMove;
+import model.AuthData;
+import model.GameData;
+import model.UserData;
+
+import java.util.Collection;
+
+/**
+ * Base for decorators that add behavior in front of another DataAccess. Every call is passed
+ * straight through; subclasses override the calls they care about.
+ */
+public abstract class DelegatingDataAccess implements DataAccess {
+    protected final DataAccess delegate;
+
+    protected DelegatingDataAccess(DataAccess delegate) {
+        this.delegate = delegate;
+    }
+
+    public void clear() throws DataAccessException {
+        delegate.clear();
+    }
+
+    public UserData writeUser(UserData user) throws DataAccessException {
+        return delegate.writeUser(user);
+    }
+
+    public UserData readUser(String username) throws DataAccessException {
+        return delegate.readUser(username);
+    }
+
+    public AuthData writeAuth(String username) throws DataAccessException {
+        return delegate.writeAuth(username);
+    }
+
+    public AuthData readAuth(String token) throws DataAccessException {
+        return delegate.readAuth(token);
+    }
+
+    public void deleteAuth(String token) throws DataAccessException {
+        delegate.deleteAuth(token);
+    }
+
+    public GameData newGame(String gameName) throws DataAccessException {
+        return delegate.newGame(gameName);
+    }
+
+    public void updateGame(GameData game) throws DataAccessException {
+        delegate.updateGame(game);
+    }
+
+    public GameData readGame(int gameID) throws DataAccessException {
+        return delegate.readGame(gameID);
+    }
+
+    public void appendMove(GameData game, ChessMove move) throws DataAccessException {
+        delegate.appendMove(game, move);
+    }
+
+    public GameData loadGame(int gameID) throws DataAccessException {
+        return delegate.loadGame(gameID);
+    }
+
+    public Collection<GameData> listGames() throws DataAccessException {
+        return delegate.listGames();
+    }
+}
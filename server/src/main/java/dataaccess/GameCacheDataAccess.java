@@ -0,0 +1,156 @@
+package dataaccess;
+
+import chess.ChessMove;
+import model.GameData;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of live games held in memory, so that commands on an active game don't read and
+ * decode it from the database each time.
+ * <p>
+ * The cached GameData is the authoritative copy of a game. Writes go through to the database
+ * before the cache is updated, and a failed write evicts the game so that the next read reloads
+ * what was actually stored. Games that have not been read or written for the idle timeout are
+ * dropped from memory.
+ */
+public class GameCacheDataAccess extends DelegatingDataAccess {
+    /**
+     * @param hits      reads answered from memory
+     * @param misses    reads passed on to the database
+     * @param evictions games dropped for inactivity or after a failed write
+     * @param size      games currently held
+     */
+    public record Stats(long hits, long misses, long evictions, int size) {
+    }
+
+    private static class Entry {
+        final GameData game;
+        volatile long lastAccess;
+
+        Entry(GameData game, long now) {
+            this.game = game;
+            this.lastAccess = now;
+        }
+    }
+
+    private final long idleTimeoutNanos;
+    private final LongSupplier clock;
+    private final Map<Integer, Entry> games = new ConcurrentHashMap<>();
+    private volatile long nextSweep;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public GameCacheDataAccess(DataAccess delegate, Duration idleTimeout) {
+        this(delegate, idleTimeout, System::nanoTime);
+    }
+
+    GameCacheDataAccess(DataAccess delegate, Duration idleTimeout, LongSupplier clock) {
+        super(delegate);
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.clock = clock;
+        this.nextSweep = clock.getAsLong() + idleTimeoutNanos;
+    }
+
+    public void clear() throws DataAccessException {
+        games.clear();
+        try {
+            delegate.clear();
+        } finally {
+            games.clear();
+        }
+    }
+
+    public GameData newGame(String gameName) throws DataAccessException {
+        var gameData = delegate.newGame(gameName);
+        if (gameData != null) {
+            put(gameData);
+        }
+        return gameData;
+    }
+
+    public void updateGame(GameData game) throws DataAccessException {
+        try {
+            delegate.updateGame(game);
+        } catch (DataAccessException | RuntimeException e) {
+            evict(game.gameID());
+            throw e;
+        }
+        put(game);
+    }
+
+    public GameData readGame(int gameID) throws DataAccessException {
+        return loadGame(gameID);
+    }
+
+    public void appendMove(GameData game, ChessMove move) throws DataAccessException {
+        try {
+            delegate.appendMove(game, move);
+        } catch (DataAccessException | RuntimeException e) {
+            evict(game.gameID());
+            throw e;
+        }
+        put(game);
+    }
+
+    public GameData loadGame(int gameID) throws DataAccessException {
+        var now = clock.getAsLong();
+        sweep(now);
+        var entry = games.get(gameID);
+        if (entry != null) {
+            hits.incrementAndGet();
+            entry.lastAccess = now;
+            return entry.game;
+        }
+        misses.incrementAndGet();
+        var gameData = delegate.loadGame(gameID);
+        if (gameData != null) {
+            // Another reader may have loaded it first; keep whichever copy got there first
+            var existing = games.putIfAbsent(gameID, new Entry(gameData, now));
+            if (existing != null) {
+                return existing.game;
+            }
+        }
+        return gameData;
+    }
+
+    /**
+     * Drops the games that have been inactive for longer than the idle timeout
+     */
+    public void evictIdle() {
+        var now = clock.getAsLong();
+        for (var e : games.entrySet()) {
+            if (now - e.getValue().lastAccess >= idleTimeoutNanos && games.remove(e.getKey(), e.getValue())) {
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(hits.get(), misses.get(), evictions.get(), games.size());
+    }
+
+    private void put(GameData game) {
+        games.put(game.gameID(), new Entry(game, clock.getAsLong()));
+    }
+
+    private void evict(int gameID) {
+        if (games.remove(gameID) != null) {
+            evictions.incrementAndGet();
+        }
+    }
+
+    // Idle games are swept at most once per idle timeout, by whichever read comes along
+    private void sweep(long now) {
+        if (now - nextSweep >= 0) {
+            nextSweep = now + idleTimeoutNanos;
+            evictIdle();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package dataaccess;
 
 import chess.ChessGame;
+import chess.ChessMove;
 import model.AuthData;
 import model.UserData;
 import model.GameData;
@@ -66,6 +67,14 @@ public class MemoryDataAccess implements DataAccess {
         return games.get(gameID);
     }
 
+    public void appendMove(GameData game, ChessMove move) {
+        games.put(game.gameID(), game);
+    }
+
+    public GameData loadGame(int gameID) {
+        return games.get(gameID);
+    }
+
     public Collection<GameData> listGames() {
         return games.values();
     }
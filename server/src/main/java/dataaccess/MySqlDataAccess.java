@@ -2,6 +2,9 @@ package dataaccess;
 
 import model.*;
 import chess.ChessGame;
+import chess.ChessMove;
+import chess.GameCodec;
+import chess.PackedMove;
 
 import java.sql.*;
 import java.util.*;
@@ -10,6 +13,26 @@ import static java.sql.Statement.RETURN_GENERATED_KEYS;
 import static java.sql.Types.NULL;
 
 public class MySqlDataAccess implements DataAccess {
+    // Plies between snapshots of a game; the moves in between are only appended to the move log
+    static final int SNAPSHOT_INTERVAL = 20;
+
+    private static final String INSERT_USER = "INSERT INTO `user` (username, password, email) VALUES (?, ?, ?)";
+    private static final String READ_USER = "SELECT password, email from `user` WHERE username = ?";
+    private static final String INSERT_AUTH = "INSERT INTO `authentication` (authToken, username) VALUES (?, ?)";
+    private static final String READ_AUTH = "SELECT username from `authentication` WHERE authToken=?";
+    private static final String DELETE_AUTH = "DELETE FROM `authentication` WHERE authToken=?";
+    private static final String INSERT_GAME = "INSERT INTO `game` (gameName, whitePlayerName, blackPlayerName, game, ply, state) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_GAME = "UPDATE `game` set gameName=?, whitePlayerName=?, blackPlayerName=?, game=?, ply=?, state=? WHERE gameID=?";
+    private static final String INSERT_MOVE = "INSERT INTO `game_move` (gameID, ply, move) VALUES (?, ?, ?)";
+    private static final String READ_GAME = "SELECT gameID, gameName, whitePlayerName, blackPlayerName, game, state FROM `game` WHERE gameID=?";
+    private static final String READ_GAME_MOVES = "SELECT ply, move FROM `game_move` WHERE gameID=? AND ply>? ORDER BY ply";
+    private static final String LIST_GAMES = "SELECT gameID, gameName, whitePlayerName, blackPlayerName, game, state FROM `game`";
+    private static final String LIST_GAME_MOVES = "SELECT m.gameID, m.ply, m.move FROM `game_move` m JOIN `game` g ON g.gameID = m.gameID WHERE m.ply > g.ply ORDER BY m.gameID, m.ply";
+
+    // Queries run on every request or move, prepared on each pooled connection up front
+    private static final List<String> HOT_STATEMENTS = List.of(
+            READ_AUTH, READ_GAME, READ_GAME_MOVES, UPDATE_GAME, INSERT_MOVE, LIST_GAMES, LIST_GAME_MOVES);
+
     public MySqlDataAccess() throws DataAccessException {
         configureDB();
     }
@@ -18,12 +41,13 @@ public class MySqlDataAccess implements DataAccess {
         executeCmd("DELETE FROM `user`");
         executeCmd("DELETE FROM `authentication`");
         executeCmd("DELETE FROM `game`");
+        executeCmd("DELETE FROM `game_move`");
     }
 
     public UserData writeUser(UserData user) throws DataAccessException {
         if (user.username() != null) {
             var u = new UserData(user.username(), user.password(), user.email());
-            executeUpdate("INSERT INTO `user` (username, password, email) VALUES (?, ?, ?)", u.username(), u.password(), u.email());
+            executeUpdate(INSERT_USER, u.username(), u.password(), u.email());
             return user;
         }
         return null;
@@ -31,7 +55,7 @@ public class MySqlDataAccess implements DataAccess {
 
     public UserData readUser(String username) throws DataAccessException {
         try (var conn = DatabaseManager.getConnection()) {
-            try (var stmt = conn.prepareStatement("SELECT password, email from `user` WHERE username = ?")) {
+            try (var stmt = conn.prepareStatement(READ_USER)) {
                 stmt.setString(1, username);
                 try (var rs = stmt.executeQuery()) {
                     if (rs.next()) {
@@ -49,13 +73,13 @@ public class MySqlDataAccess implements DataAccess {
 
     public AuthData writeAuth(String username) throws DataAccessException {
         var auth = new AuthData(AuthData.generateToken(), username);
-        executeUpdate("INSERT INTO `authentication` (authToken, username) VALUES (?, ?)", auth.authToken(), auth.username());
+        executeUpdate(INSERT_AUTH, auth.authToken(), auth.username());
         return auth;
     }
 
     public AuthData readAuth(String token) throws DataAccessException {
         try (var conn = DatabaseManager.getConnection()) {
-            try (var stmt = conn.prepareStatement("SELECT username from `authentication` WHERE authToken=?")) {
+            try (var stmt = conn.prepareStatement(READ_AUTH)) {
                 stmt.setString(1, token);
                 try (var rs = stmt.executeQuery()) {
                     if (rs.next()) {
@@ -71,15 +95,15 @@ public class MySqlDataAccess implements DataAccess {
     }
 
     public void deleteAuth(String token) throws DataAccessException {
-        executeUpdate("DELETE FROM `authentication` WHERE authToken=?", token);
+        executeUpdate(DELETE_AUTH, token);
     }
 
     public GameData newGame(String gameName) throws DataAccessException {
         var game = new ChessGame();
         game.getBoard().resetBoard();
         var state = GameData.State.UNDECIDED;
-        var gameID = executeUpdate("INSERT INTO `game` (gameName, whitePlayerName, blackPlayerName, game, state) VALUES (?, ?, ?, ?, ?)",
-                gameName, null, null, game.toString(), state.toString());
+        var gameID = executeUpdate(INSERT_GAME,
+                gameName, null, null, GameCodec.encode(game), 0, state.toString());
         if (gameID != 0) {
             return new GameData(gameID, null, null, gameName, game, state);
         }
@@ -87,56 +111,114 @@ public class MySqlDataAccess implements DataAccess {
     }
 
     public void updateGame(GameData gameData) throws DataAccessException {
-        executeUpdate("UPDATE `game` set gameName=?, whitePlayerName=?, blackPlayerName=?, game=?, state=? WHERE gameID=?",
+        executeUpdate(UPDATE_GAME, updateGameArgs(gameData));
+    }
+
+    private static Object[] updateGameArgs(GameData gameData) {
+        return new Object[]{
                 gameData.gameName(),
                 gameData.whiteUsername(),
                 gameData.blackUsername(),
-                gameData.game().toString(),
+                GameCodec.encode(gameData.game()),
+                gameData.game().getBoard().getHistory().size(),
                 gameData.state().toString(),
-                gameData.gameID());
+                gameData.gameID()};
     }
 
     public GameData readGame(int gameID) throws DataAccessException {
+        return loadGame(gameID);
+    }
+
+    public void appendMove(GameData gameData, ChessMove move) throws DataAccessException {
+        var ply = gameData.game().getBoard().getHistory().size();
+        try (var conn = DatabaseManager.getConnection()) {
+            // The move and its snapshot land together; closing the connection rolls back
+            // anything left uncommitted
+            conn.setAutoCommit(false);
+            executeUpdate(conn, INSERT_MOVE, gameData.gameID(), ply, PackedMove.of(move));
+            if (ply % SNAPSHOT_INTERVAL == 0 || gameData.isGameOver()) {
+                executeUpdate(conn, UPDATE_GAME, updateGameArgs(gameData));
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            throw new DataAccessException("Error appending move: " + e.getMessage());
+        }
+    }
+
+    public GameData loadGame(int gameID) throws DataAccessException {
         try (var conn = DatabaseManager.getConnection()) {
-            try (var stmt = conn.prepareStatement(
-                    "SELECT gameID, gameName, whitePlayerName, blackPlayerName, game, state FROM `game` WHERE gameID=?")) {
+            GameData gameData = null;
+            try (var stmt = conn.prepareStatement(READ_GAME)) {
                 stmt.setInt(1, gameID);
                 try (var rs = stmt.executeQuery()) {
                     if (rs.next()) {
-                        return readGameData(rs);
+                        gameData = readGameData(rs);
                     }
                 }
             }
+            if (gameData != null) {
+                var game = gameData.game();
+                try (var stmt = conn.prepareStatement(READ_GAME_MOVES)) {
+                    stmt.setInt(1, gameID);
+                    stmt.setInt(2, game.getBoard().getHistory().size());
+                    try (var rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            replayMove(game, rs.getInt("ply"), rs.getInt("move"));
+                        }
+                    }
+                }
+            }
+            return gameData;
         } catch (SQLException e) {
             throw new DataAccessException("Error reading game: " + e.getMessage());
         }
-        return null;
     }
 
     public Collection<GameData> listGames() throws DataAccessException {
-        var games = new ArrayList<GameData>();
+        var games = new LinkedHashMap<Integer, GameData>();
         try (var conn = DatabaseManager.getConnection()) {
-            try (var stmt = conn.prepareStatement("SELECT gameID, gameName, whitePlayerName, blackPlayerName, game, state FROM `game`")) {
+            try (var stmt = conn.prepareStatement(LIST_GAMES)) {
                 try (var rs = stmt.executeQuery()) {
                     while (rs.next()) {
-                        games.add(readGameData(rs));
+                        var gameData = readGameData(rs);
+                        games.put(gameData.gameID(), gameData);
+                    }
+                }
+            }
+            try (var stmt = conn.prepareStatement(LIST_GAME_MOVES)) {
+                try (var rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        var gameData = games.get(rs.getInt("gameID"));
+                        if (gameData != null) {
+                            replayMove(gameData.game(), rs.getInt("ply"), rs.getInt("move"));
+                        }
                     }
                 }
             }
         } catch (SQLException e) {
             throw new DataAccessException("Error reading games: " + e.getMessage());
         }
-        return games;
+        return games.values();
     }
 
     // Helper methods for reading and writing to the database
+
+    /**
+     * Plays a logged move on a game loaded from its snapshot, unless the snapshot already has it
+     */
+    private static void replayMove(ChessGame game, int ply, int move) {
+        if (ply > game.getBoard().getHistory().size()) {
+            game.makeMove(move);
+        }
+    }
+
     private GameData readGameData(ResultSet rs) throws SQLException {
-        var gs = rs.getString("game");
+        var gs = rs.getBytes("game");
         var gameID = rs.getInt("gameID");
         var gameName = rs.getString("gameName");
         var whitePlayerName = rs.getString("whitePlayerName");
         var blackPlayerName = rs.getString("blackPlayerName");
-        var game = ChessGame.createGame(gs);
+        var game = GameCodec.decode(gs);
         var state = GameData.State.valueOf(rs.getString("state"));
         return new GameData(gameID, whitePlayerName, blackPlayerName, gameName, game, state);
     }
@@ -155,12 +237,22 @@ public class MySqlDataAccess implements DataAccess {
               `gameName` varchar(45) DEFAULT NULL,
               `whitePlayerName` varchar(100) DEFAULT NULL,
               `blackPlayerName` varchar(100) DEFAULT NULL,
-              `game` longtext NOT NULL,
+              `game` longblob NOT NULL,
+              `ply` int NOT NULL DEFAULT 0,
               `state` varchar(45) DEFAULT NULL,
               PRIMARY KEY (`gameID`)
             ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci
             """,
             """
+            CREATE TABLE IF NOT EXISTS game_move (
+              `gameID` int NOT NULL,
+              `ply` int NOT NULL,
+              `move` smallint unsigned NOT NULL,
+              `created` timestamp(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+              PRIMARY KEY (`gameID`, `ply`)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci
+            """,
+            """
             CREATE TABLE IF NOT EXISTS user (
               `username` varchar(256) NOT NULL,
               `password` varchar(4096) NOT NULL,
@@ -180,12 +272,45 @@ public class MySqlDataAccess implements DataAccess {
                         preparedStatement.executeUpdate();
                     }
                 }
+                migrateGameTable(conn);
             }
+            DatabaseManager.registerStatements(HOT_STATEMENTS);
         } catch (SQLException e) {
             throw new DataAccessException("Error configuring database: " + e.getMessage());
         }
     }
 
+    /**
+     * Brings a game table created by an older version up to date. Games used to be stored as JSON
+     * text; the column becomes binary so that it can hold the GameCodec format, and existing JSON
+     * rows keep their bytes and are still readable. The ply column records how many moves the
+     * stored snapshot holds.
+     */
+    private void migrateGameTable(Connection conn) throws SQLException {
+        var gameType = columnType(conn, "game", "game");
+        if (gameType != null && !gameType.equalsIgnoreCase("longblob")) {
+            try (var alter = conn.prepareStatement("ALTER TABLE `game` MODIFY `game` longblob NOT NULL")) {
+                alter.executeUpdate();
+            }
+        }
+        if (columnType(conn, "game", "ply") == null) {
+            try (var alter = conn.prepareStatement("ALTER TABLE `game` ADD COLUMN `ply` int NOT NULL DEFAULT 0 AFTER `game`")) {
+                alter.executeUpdate();
+            }
+        }
+    }
+
+    private String columnType(Connection conn, String table, String column) throws SQLException {
+        var query = "SELECT DATA_TYPE FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?";
+        try (var stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, table);
+            stmt.setString(2, column);
+            try (var rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
     private void executeCmd(String cmd) throws DataAccessException {
         try (var conn = DatabaseManager.getConnection()) {
             try (var stmt = conn.prepareStatement(cmd)) {
@@ -198,26 +323,32 @@ public class MySqlDataAccess implements DataAccess {
 
     private int executeUpdate(String cmd, Object... args) throws DataAccessException {
         try (var conn = DatabaseManager.getConnection()) {
-            try (var stmt = conn.prepareStatement(cmd, RETURN_GENERATED_KEYS)) {
-                for (int i = 0; i < args.length; i++) {
-                    var param = args[i];
-                    if (param instanceof String p) {
-                        stmt.setString(i + 1, p);
-                    } else if (param instanceof Integer p) {
-                        stmt.setInt(i + 1, p);
-                    } else if (param == null) {
-                        stmt.setNull(i + 1, NULL);
-                    }
+            return executeUpdate(conn, cmd, args);
+        } catch (SQLException e) {
+            throw new DataAccessException("Error executing update: " + e.getMessage());
+        }
+    }
+
+    private int executeUpdate(Connection conn, String cmd, Object... args) throws SQLException {
+        try (var stmt = conn.prepareStatement(cmd, RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < args.length; i++) {
+                var param = args[i];
+                if (param instanceof String p) {
+                    stmt.setString(i + 1, p);
+                } else if (param instanceof Integer p) {
+                    stmt.setInt(i + 1, p);
+                } else if (param instanceof byte[] p) {
+                    stmt.setBytes(i + 1, p);
+                } else if (param == null) {
+                    stmt.setNull(i + 1, NULL);
                 }
-                stmt.executeUpdate();
-                try (var rs = stmt.getGeneratedKeys()) {
-                    if (rs.next()) {
-                        return rs.getInt(1);
-                    }
+            }
+            stmt.executeUpdate();
+            try (var rs = stmt.getGeneratedKeys()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
                 }
             }
-        } catch (SQLException e) {
-            throw new DataAccessException("Error executing update: " + e.getMessage());
         }
         return 0;
     }
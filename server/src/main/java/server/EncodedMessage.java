@@ -0,0 +1,137 @@
+package server;
+
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.eclipse.jetty.websocket.common.WebSocketRemoteEndpoint;
+import org.eclipse.jetty.websocket.common.frames.TextFrame;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+/**
+ * A server message encoded to UTF-8 once, so that broadcasting it to a room shares one buffer
+ * between every recipient instead of re-encoding the text for each session
+ */
+public final class EncodedMessage {
+    private final String text;
+    private final ByteBuffer utf8;
+    private final String coalesceKey;
+    private final Supplier<EncodedMessage> fullState;
+
+    private EncodedMessage(String text, String coalesceKey, Supplier<EncodedMessage> fullState) {
+        this.text = text;
+        this.utf8 = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+        this.coalesceKey = coalesceKey;
+        this.fullState = fullState;
+    }
+
+    public static EncodedMessage of(String text) {
+        return new EncodedMessage(text, null, null);
+    }
+
+    /**
+     * Encodes a message that replaces any earlier message with the same key still waiting in a
+     * coalescing outbox, such as a full game state that makes the previous one obsolete
+     * @param coalesceKey identifies the messages this one supersedes
+     * @param text the message
+     */
+    public static EncodedMessage coalescing(String coalesceKey, String text) {
+        return new EncodedMessage(text, coalesceKey, null);
+    }
+
+    /**
+     * Encodes a change to a state that a coalescing outbox can't apply on top of a superseded
+     * message, so when it drops one it queues the full state in this message's place
+     * @param coalesceKey identifies the messages this one supersedes
+     * @param fullState the coalescing message with the state after the change; only asked for
+     *                  when a message is actually superseded
+     * @param text the change
+     */
+    public static EncodedMessage delta(String coalesceKey, Supplier<EncodedMessage> fullState, String text) {
+        return new EncodedMessage(text, coalesceKey, fullState);
+    }
+
+    /**
+     * Defers building and encoding a message until the first recipient needs it. Every later
+     * call returns that same encoding.
+     * @param text builds the message
+     */
+    public static Supplier<EncodedMessage> lazy(Supplier<String> text) {
+        return lazy(null, text);
+    }
+
+    /**
+     * Like {@link #lazy(Supplier)}, for a message that supersedes others with the same key
+     * @param coalesceKey identifies the messages this one supersedes
+     * @param text builds the message
+     */
+    public static Supplier<EncodedMessage> lazy(String coalesceKey, Supplier<String> text) {
+        return new Supplier<>() {
+            private EncodedMessage encoded;
+
+            @Override
+            public synchronized EncodedMessage get() {
+                if (encoded == null) {
+                    encoded = new EncodedMessage(text.get(), coalesceKey, null);
+                }
+                return encoded;
+            }
+        };
+    }
+
+    public String text() {
+        return text;
+    }
+
+    /**
+     * @return a read-only view of the encoded bytes with its own position, safe to hand to one send
+     */
+    public ByteBuffer payload() {
+        return utf8.duplicate();
+    }
+
+    /**
+     * Starts sending the message to one session. On Jetty's endpoint it goes out as a text frame
+     * whose payload is a view of the shared buffer, so nothing is copied or re-encoded per
+     * recipient; other endpoints are sent the text.
+     * @param remote the session's endpoint
+     * @param callback told when the write finishes or fails
+     */
+    public void send(RemoteEndpoint remote, WriteCallback callback) {
+        if (remote instanceof WebSocketRemoteEndpoint endpoint) {
+            var frame = new TextFrame();
+            frame.setPayload(payload());
+            endpoint.uncheckedSendFrame(frame, callback);
+        } else {
+            remote.sendString(text, callback);
+        }
+    }
+
+    /**
+     * @return the key of the messages this one supersedes, or null if it supersedes none
+     */
+    public String coalesceKey() {
+        return coalesceKey;
+    }
+
+    /**
+     * @return the message to queue when this one supersedes another, which is itself unless it is
+     * a delta
+     */
+    public EncodedMessage fullState() {
+        return fullState == null ? this : fullState.get();
+    }
+
+    /**
+     * @return the encoded size in bytes
+     */
+    public int size() {
+        return utf8.remaining();
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
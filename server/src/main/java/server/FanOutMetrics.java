@@ -0,0 +1,59 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the websocket traffic that moves generate: every message sent because of a move,
+ * to every member of the game's room
+ */
+public class FanOutMetrics {
+    /**
+     * @param moves        moves broadcast
+     * @param frames       messages sent for those moves, counting each recipient
+     * @param bytes        bytes sent for those moves
+     * @param maxMoveBytes most bytes sent for a single move
+     */
+    public record Snapshot(long moves, long frames, long bytes, long maxMoveBytes) {
+        public double bytesPerMove() {
+            return moves == 0 ? 0 : (double) bytes / moves;
+        }
+    }
+
+    /**
+     * Tallies the messages sent for one move
+     */
+    public static class Move {
+        private long frames;
+        private long bytes;
+
+        /**
+         * @param recipients how many sessions the message was sent to
+         * @param message    the message
+         */
+        public void add(int recipients, EncodedMessage message) {
+            frames += recipients;
+            bytes += (long) recipients * message.size();
+        }
+
+        public long bytes() {
+            return bytes;
+        }
+    }
+
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final AtomicLong maxMoveBytes = new AtomicLong();
+
+    public void record(Move move) {
+        moves.increment();
+        frames.add(move.frames);
+        bytes.add(move.bytes);
+        maxMoveBytes.accumulateAndGet(move.bytes, Math::max);
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(moves.sum(), frames.sum(), bytes.sum(), maxMoveBytes.get());
+    }
+}
@@ -0,0 +1,126 @@
+package server;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * Gives every game a mailbox: commands for a game are queued and run one at a time, in the order
+ * they arrived, by whichever virtual thread currently owns the mailbox. Because a game's state is
+ * only touched from its own mailbox, a move, a resign and a join on the same game can't interleave
+ * their read, change and write, and nothing has to be locked. Different games have separate
+ * mailboxes and run in parallel.
+ * <p>
+ * Commands run off Jetty's I/O threads, so a slow database call only holds up its own game.
+ */
+public class GameDispatcher {
+    /**
+     * The queue of one game. The thread that flips {@code scheduled} from false to true owns the
+     * mailbox and drains it; producers only ever append.
+     */
+    private static class Mailbox {
+        final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+    }
+
+    private final Executor executor;
+    private final ConcurrentHashMap<Integer, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    public GameDispatcher() {
+        this(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    public GameDispatcher(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Queues a task behind the tasks already queued for the same game
+     * @param gameID the game the task acts on, or null if it has none
+     * @param task the task
+     */
+    public void dispatch(Integer gameID, Runnable task) {
+        if (gameID == null) {
+            executor.execute(() -> run(task));
+            return;
+        }
+        // Appending under the map's per-key lock means a task is never added to a mailbox that
+        // is being retired
+        var mailbox = mailboxes.compute(gameID, (id, m) -> {
+            m = m != null ? m : new Mailbox();
+            m.queue.add(task);
+            return m;
+        });
+        schedule(gameID, mailbox);
+    }
+
+    /**
+     * Runs a task in a game's mailbox and waits for its result. Must not be called from a task
+     * running in the same game's mailbox, which would wait on itself.
+     * @param gameID the game the task acts on
+     * @param task the task
+     * @return the task's result
+     * @throws Exception whatever the task threw
+     */
+    public <T> T call(Integer gameID, Callable<T> task) throws Exception {
+        var result = new CompletableFuture<T>();
+        dispatch(gameID, () -> {
+            try {
+                result.complete(task.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of games with commands queued or running
+     */
+    public int activeGames() {
+        return mailboxes.size();
+    }
+
+    private void schedule(int gameID, Mailbox mailbox) {
+        if (mailbox.scheduled.compareAndSet(false, true)) {
+            executor.execute(() -> drain(gameID, mailbox));
+        }
+    }
+
+    private void drain(int gameID, Mailbox mailbox) {
+        while (true) {
+            Runnable task;
+            while ((task = mailbox.queue.poll()) != null) {
+                run(task);
+            }
+            mailbox.scheduled.set(false);
+            // A task queued after the last poll but before the flag was cleared saw the mailbox as
+            // owned and didn't schedule it; take ownership back and keep going
+            if (mailbox.queue.isEmpty() || !mailbox.scheduled.compareAndSet(false, true)) {
+                break;
+            }
+        }
+        mailboxes.computeIfPresent(gameID, (id, m) -> m.queue.isEmpty() && !m.scheduled.get() ? null : m);
+    }
+
+    private static void run(Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable e) {
+            Server.LOG.log(Level.WARNING, "Game command failed", e);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package server;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outbound message queue of one websocket session. Sending only appends to the queue; the queue
+ * is written one message at a time, each write started from the completion callback of the one
+ * before, so a session with a slow network doesn't hold up the thread that is broadcasting to
+ * the rest of its game.
+ * <p>
+ * The queue is bounded. A session that falls further behind than the bound either loses its
+ * oldest unsent messages or is disconnected, depending on the policy. A coalescing outbox also
+ * keeps only the latest of the waiting messages that share a coalesce key, which lets an
+ * observer that is behind skip straight to the current board.
+ */
+public class Outbox {
+    public enum Overflow {
+        // Discard the oldest queued message to make room
+        DROP_OLDEST,
+        // Close the session; the client can reconnect and load the game again
+        DISCONNECT
+    }
+
+    /**
+     * @param maxQueued most messages waiting to be written for one session
+     * @param overflow  what to do when a session has that many waiting
+     */
+    public record Policy(int maxQueued, Overflow overflow) {
+    }
+
+    /**
+     * @param sessions     sessions with an outbox
+     * @param queued       messages waiting to be written, over all sessions
+     * @param maxDepth     most messages waiting for any one session right now
+     * @param peakDepth    most messages ever waiting for one session
+     * @param sent         messages written
+     * @param dropped      messages discarded by DROP_OLDEST
+     * @param disconnected sessions closed by DISCONNECT
+     * @param failed       writes that failed
+     * @param coalesced    waiting messages replaced by a newer one with the same coalesce key
+     */
+    public record Metrics(int sessions, long queued, int maxDepth, int peakDepth, long sent, long dropped,
+                          long disconnected, long failed, long coalesced) {
+    }
+
+    /**
+     * Counters shared by the outboxes of every session
+     */
+    public static class Counters {
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder disconnected = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+        private final AtomicInteger peakDepth = new AtomicInteger();
+
+        /**
+         * @param outboxes the outboxes of the open sessions
+         */
+        public Metrics snapshot(Iterable<Outbox> outboxes) {
+            var sessions = 0;
+            var queued = 0L;
+            var deepest = 0;
+            for (var outbox : outboxes) {
+                var depth = outbox.depth();
+                sessions++;
+                queued += depth;
+                deepest = Math.max(deepest, depth);
+            }
+            return new Metrics(sessions, queued, deepest, peakDepth.get(), sent.sum(), dropped.sum(),
+                    disconnected.sum(), failed.sum(), coalesced.sum());
+        }
+    }
+
+    private final Session session;
+    private final Policy policy;
+    private final Counters counters;
+
+    // Guarded by this
+    private final ArrayDeque<EncodedMessage> queue = new ArrayDeque<>();
+    private boolean writing;
+    private boolean closed;
+    private boolean coalescing;
+
+    public Outbox(Session session, Policy policy, Counters counters) {
+        this.session = session;
+        this.policy = policy;
+        this.counters = counters;
+    }
+
+    /**
+     * Turns coalescing of superseded messages on or off, e.g. when the session switches between
+     * playing and observing
+     */
+    public synchronized void setCoalescing(boolean coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    /**
+     * Queues a message for the session, starting a write if none is in progress
+     */
+    public void send(EncodedMessage msg) {
+        EncodedMessage next = null;
+        var queued = msg;
+        var disconnect = false;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            // The message being written can't be recalled, but a waiting one it supersedes is
+            // dropped so the new one goes to the back of the queue in its place. A delta can't be
+            // applied without what it replaced, so the full state goes in instead.
+            if (coalescing && msg.coalesceKey() != null
+                    && queue.removeIf(waiting -> msg.coalesceKey().equals(waiting.coalesceKey()))) {
+                counters.coalesced.increment();
+                queued = msg.fullState();
+            }
+            if (queue.size() >= policy.maxQueued()) {
+                if (policy.overflow() == Overflow.DISCONNECT) {
+                    closed = true;
+                    disconnect = true;
+                    queue.clear();
+                } else {
+                    queue.pollFirst();
+                    counters.dropped.increment();
+                }
+            }
+            if (!disconnect) {
+                queue.addLast(queued);
+                counters.peakDepth.accumulateAndGet(queue.size(), Math::max);
+                if (!writing) {
+                    writing = true;
+                    next = queue.pollFirst();
+                }
+            }
+        }
+        if (disconnect) {
+            counters.disconnected.increment();
+            session.close(StatusCode.TRY_AGAIN_LATER, "Outbound queue full");
+        } else if (next != null) {
+            write(next);
+        }
+    }
+
+    /**
+     * @return the number of messages queued or being written
+     */
+    public synchronized int depth() {
+        return queue.size() + (writing ? 1 : 0);
+    }
+
+    private void write(EncodedMessage msg) {
+        var callback = new WriteCallback() {
+            @Override
+            public void writeSuccess() {
+                counters.sent.increment();
+                writeNext();
+            }
+
+            @Override
+            public void writeFailed(Throwable x) {
+                counters.failed.increment();
+                synchronized (Outbox.this) {
+                    closed = true;
+                    writing = false;
+                    queue.clear();
+                }
+                // Closing runs onClose, which drops the connection from its room
+                session.close(StatusCode.SERVER_ERROR, "Write failed");
+            }
+        };
+
+        try {
+            msg.send(session.getRemote(), callback);
+        } catch (RuntimeException e) {
+            callback.writeFailed(e);
+        }
+    }
+
+    private void writeNext() {
+        EncodedMessage next;
+        synchronized (this) {
+            next = closed ? null : queue.pollFirst();
+            if (next == null) {
+                writing = false;
+                return;
+            }
+        }
+        write(next);
+    }
+}
@@ -1,12 +1,17 @@
 package server;
 
 import com.google.gson.Gson;
+import dataaccess.AuthCacheDataAccess;
+import dataaccess.DataAccess;
+import dataaccess.DatabaseManager;
+import dataaccess.GameCacheDataAccess;
 import dataaccess.MySqlDataAccess;
 import model.*;
 import service.*;
 import spark.*;
 import util.CodedException;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.logging.Logger;
 
@@ -20,8 +25,17 @@ public class Server {
     AdminService adminService;
     AuthService authService;
     WebSocketHandler webSocketHandler;
+    GameDispatcher gameDispatcher;
+    AuthCacheDataAccess authCache;
+    GameCacheDataAccess gameCache;
 
     public static final Logger LOG = Logger.getLogger("Chess Server");
+
+    private static final Duration AUTH_CACHE_TTL = Duration.ofMinutes(5);
+    private static final int AUTH_CACHE_SIZE = 10_000;
+    private static final Duration GAME_CACHE_IDLE_TIMEOUT = Duration.ofMinutes(30);
+    private static final Outbox.Policy OUTBOX_POLICY = new Outbox.Policy(256, Outbox.Overflow.DISCONNECT);
+
     public int run(int desiredPort) {
         try {
             loadServices();
@@ -40,6 +54,7 @@ public class Server {
             Spark.get("/game", this::listGames);
             Spark.post("/game", this::createGame);
             Spark.put("/game", this::joinGame);
+            Spark.get("/metrics", this::metrics);
             Spark.afterAfter(this::log);
 
             Spark.exception(CodedException.class, this::errorHandler);
@@ -71,13 +86,16 @@ public class Server {
      * @throws Exception
      */
     private void loadServices() throws Exception{
-        var dataAccess = new MySqlDataAccess();
+        authCache = new AuthCacheDataAccess(new MySqlDataAccess(), AUTH_CACHE_TTL, AUTH_CACHE_SIZE);
+        gameCache = new GameCacheDataAccess(authCache, GAME_CACHE_IDLE_TIMEOUT);
+        DataAccess dataAccess = gameCache;
 
         userService = new UserService(dataAccess);
         gameService = new GameService(dataAccess);
         adminService = new AdminService(dataAccess);
         authService = new AuthService(dataAccess);
-        webSocketHandler = new WebSocketHandler(dataAccess);
+        gameDispatcher = new GameDispatcher();
+        webSocketHandler = new WebSocketHandler(dataAccess, gameDispatcher, OUTBOX_POLICY);
     }
 
     private Object errorHandler(CodedException e, Request req, Response res) {
@@ -182,13 +200,31 @@ public class Server {
      */
     // Endpoint for [PUT] /game - Join Game - Body: { "color":"", "gameId":"" }
     // [200]{} [400]{"message": "Missing body"} [401]{"message": "Unauthorized"} [403]{"message": "Already taken"} [500]{"message": "Server error"}
-    public Object joinGame(Request req, Response res) throws CodedException {
+    public Object joinGame(Request req, Response res) throws Exception {
         var token = unauthorized(req);
         var joinRequest = getBody(req, JoinRequest.class);
-        var gameData = gameService.joinGame(token.username(), joinRequest.playerColor(), joinRequest.gameID());
+        // Joining changes the game, so it runs in the game's mailbox with its websocket commands
+        gameDispatcher.call(joinRequest.gameID(), () ->
+                gameService.joinGame(token.username(), joinRequest.playerColor(), joinRequest.gameID()));
         return send();
     }
 
+    /**
+     * GET /metrics endpoint handler
+     * @param req the request
+     * @param res the response
+     * @return the connection pool, cache and websocket counters
+     * @throws CodedException if the request is not authorized
+     */
+    public Object metrics(Request req, Response res) throws CodedException {
+        unauthorized(req);
+        return send("connectionPool", DatabaseManager.poolMetrics(),
+                "authCache", authCache.stats(),
+                "gameCache", gameCache.stats(),
+                "fanOut", webSocketHandler.fanOutMetrics(),
+                "outbox", webSocketHandler.outboxMetrics());
+    }
+
     // Helper methods
     private <T> T getBody(Request request, Class<T> clazz) throws CodedException {
         var body = new Gson().fromJson(request.body(), clazz);
@@ -17,7 +17,11 @@ import static chess.ChessGame.TeamColor.WHITE;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 @WebSocket
 public class WebSocketHandler {
@@ -25,20 +29,32 @@ public class WebSocketHandler {
 
     public static class Connection {
         public UserData user;
-        public GameData game;
+        // Written by the game's mailbox and read by other games' mailboxes and onClose
+        public volatile GameData game;
         public Session session;
+        public final Outbox outbox;
+        // Whether the client asked for MOVE_APPLIED deltas instead of a LOAD_GAME after each move
+        public volatile boolean moveDeltas;
 
-        public Connection(UserData user, Session session) {
+        public Connection(UserData user, Session session, Outbox outbox) {
             this.user = user;
             this.session = session;
+            this.outbox = outbox;
         }
 
-        private void send(String msg) throws Exception {
-            session.getRemote().sendString(msg);
+        private void send(String msg) {
+            send(EncodedMessage.of(msg));
         }
 
-        private void sendError(String msg) throws Exception {
-            sendError(session.getRemote(), msg);
+        /**
+         * Queues a message on the session's outbox; it is written asynchronously
+         */
+        private void send(EncodedMessage msg) {
+            outbox.send(msg);
+        }
+
+        private void sendError(String msg) {
+            send((new ErrorMessage(String.format("ERROR: %s", msg))).toString());
         }
 
         private static void sendError(RemoteEndpoint endpoint, String msg) throws Exception {
@@ -48,52 +64,139 @@ public class WebSocketHandler {
 
     }
 
+    /**
+     * Tracks the open connections by user and by session, and groups them into a room per game so
+     * that a broadcast only visits the players and observers of that game
+     */
     public static class ConnectionManager {
         public final ConcurrentHashMap<String, Connection> connections = new ConcurrentHashMap<>();
-
-        public void add(String username, Connection connection) {
-            connections.put(username, connection);
+        private final ConcurrentHashMap<Session, Connection> sessions = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Integer, Set<Connection>> rooms = new ConcurrentHashMap<>();
+
+        /**
+         * Returns the user's connection, creating it if there is none. Commands for different
+         * games run in parallel, so two of them may race to create the same user's connection;
+         * only one is ever registered.
+         * @param username the user
+         * @param create makes the connection if the user has none
+         * @return the user's connection
+         */
+        public Connection getOrAdd(String username, Function<String, Connection> create) {
+            return connections.computeIfAbsent(username, name -> {
+                var connection = create.apply(name);
+                sessions.put(connection.session, connection);
+                return connection;
+            });
         }
 
         public Connection get(String username) {
             return connections.get(username);
         }
 
-        public void remove(Session session) {
-            Connection removeConnection = null;
-            for (var c : connections.values()) {
-                if (c.session.equals(session)) {
-                    removeConnection = c;
-                    break;
-                }
+        /**
+         * Moves a connection into a game's room, leaving the room of any game it was in before
+         * @param connection the connection
+         * @param gameData the game it joined
+         */
+        public void enter(Connection connection, GameData gameData) {
+            var previous = connection.game;
+            connection.game = gameData;
+            if (previous != null && previous.gameID() != gameData.gameID()) {
+                leaveRoom(previous.gameID(), connection);
             }
+            rooms.computeIfAbsent(gameData.gameID(), id -> ConcurrentHashMap.newKeySet()).add(connection);
+        }
 
+        public void remove(Session session) {
+            var removeConnection = sessions.remove(session);
             if (removeConnection != null) {
-                connections.remove(removeConnection.user.username());
+                remove(removeConnection);
             }
         }
 
         public void broadcast(int gameID, String excludeUsername, String msg) throws Exception {
+            broadcast(gameID, excludeUsername, EncodedMessage.of(msg));
+        }
+
+        /**
+         * Sends a message to everyone in a game's room
+         * @param gameID the game
+         * @param excludeUsername a user to leave out, or an empty string
+         * @param msg the message, encoded once for every recipient
+         * @return the number of sessions the message was sent to
+         * @throws Exception if sending fails
+         */
+        public int broadcast(int gameID, String excludeUsername, EncodedMessage msg) throws Exception {
+            return broadcast(gameID, excludeUsername, msg, c -> true);
+        }
+
+        /**
+         * Sends a message to the members of a game's room that match a filter
+         * @param gameID the game
+         * @param excludeUsername a user to leave out, or an empty string
+         * @param msg the message, encoded once for every recipient
+         * @param filter selects the connections to send to
+         * @return the number of sessions the message was sent to
+         * @throws Exception if sending fails
+         */
+        public int broadcast(int gameID, String excludeUsername, EncodedMessage msg, Predicate<Connection> filter) throws Exception {
+            return broadcast(gameID, excludeUsername, () -> msg, filter);
+        }
+
+        /**
+         * Sends a message to the members of a game's room that pass a filter, encoding it only
+         * if at least one of them does
+         * @param gameID the game
+         * @param excludeUsername a user to leave out, or an empty string
+         * @param msg supplies the message, at most once if it is {@link EncodedMessage#lazy lazy}
+         * @param filter selects the connections to send to
+         * @return the number of sessions the message was sent to
+         * @throws Exception if sending fails
+         */
+        public int broadcast(int gameID, String excludeUsername, Supplier<EncodedMessage> msg, Predicate<Connection> filter) throws Exception {
+            var room = rooms.get(gameID);
+            if (room == null) {
+                return 0;
+            }
+            var sent = 0;
             var removeList = new ArrayList<Connection>();
-            for (var c : connections.values()) {
+            for (var c : room) {
                 if (c.session.isOpen()) {
-                    if (c.game.gameID() == gameID && !StringUtil.isEqual(c.user.username(), excludeUsername)) {
-                        c.send(msg);
+                    if (!StringUtil.isEqual(c.user.username(), excludeUsername) && filter.test(c)) {
+                        c.send(msg.get());
+                        sent++;
                     }
                 } else {
                     removeList.add(c);
                 }
             }
             for (var c : removeList) {
-                connections.remove(c.user.username());
+                sessions.remove(c.session, c);
+                remove(c);
             }
+            return sent;
+        }
+
+        private void remove(Connection connection) {
+            connections.remove(connection.user.username(), connection);
+            if (connection.game != null) {
+                leaveRoom(connection.game.gameID(), connection);
+            }
+        }
+
+        private void leaveRoom(int gameID, Connection connection) {
+            rooms.computeIfPresent(gameID, (id, room) -> {
+                room.remove(connection);
+                return room.isEmpty() ? null : room;
+            });
         }
 
         @Override
         public String toString() {
             var sb = new StringBuilder("[\n");
             for (var c : connections.values()) {
-                sb.append(String.format("  {'game':%d, 'user': %s}%n", c.game.gameID(), c.user));
+                var gameID = c.game != null ? String.valueOf(c.game.gameID()) : "none";
+                sb.append(String.format("  {'game':%s, 'user': %s}%n", gameID, c.user));
             }
             sb.append("]");
             return sb.toString();
@@ -101,9 +204,38 @@ public class WebSocketHandler {
     }
 
     private final ConnectionManager connections = new ConnectionManager();
+    private final FanOutMetrics fanOutMetrics = new FanOutMetrics();
+    private final GameDispatcher dispatcher;
+    private final Outbox.Policy outboxPolicy;
+    private final Outbox.Counters outboxCounters = new Outbox.Counters();
 
     public WebSocketHandler(DataAccess dataAccess) {
+        this(dataAccess, new GameDispatcher(), new Outbox.Policy(256, Outbox.Overflow.DISCONNECT));
+    }
+
+    /**
+     * @param dataAccess the data access
+     * @param dispatcher runs the commands for each game in that game's mailbox
+     * @param outboxPolicy bound and overflow policy of each session's outbound queue
+     */
+    public WebSocketHandler(DataAccess dataAccess, GameDispatcher dispatcher, Outbox.Policy outboxPolicy) {
         this.dataAccess = dataAccess;
+        this.dispatcher = dispatcher;
+        this.outboxPolicy = outboxPolicy;
+    }
+
+    /**
+     * @return depth and drop counters of the sessions' outbound queues
+     */
+    public Outbox.Metrics outboxMetrics() {
+        return outboxCounters.snapshot(connections.connections.values().stream().map(c -> c.outbox)::iterator);
+    }
+
+    /**
+     * @return counters for the messages sent to rooms because of moves
+     */
+    public FanOutMetrics.Snapshot fanOutMetrics() {
+        return fanOutMetrics.snapshot();
     }
 
     @OnWebSocketConnect
@@ -116,24 +248,55 @@ public class WebSocketHandler {
         connections.remove(session);
     }
 
+    /**
+     * Decodes a command on the websocket I/O thread and hands it to the dispatcher, which runs it
+     * in order with the other commands for the same game
+     */
     @OnWebSocketMessage
     public void onMessage(Session session, String message) throws Exception {
+        GameCommand command;
         try {
-            var command = readJson(message, GameCommand.class);
+            command = readJson(message, GameCommand.class);
+            command = switch (command.getCommandType()) {
+                case CONNECT -> readJson(message, JoinPlayerCommand.class);
+                case MAKE_MOVE -> readJson(message, MoveCommand.class);
+                case null, default -> command;
+            };
+        } catch (Exception e) {
+            Connection.sendError(session.getRemote(), util.ExceptionUtil.getRootCause(e).getMessage());
+            return;
+        }
+        var decoded = command;
+        dispatcher.dispatch(command.gameID, () -> handleCommand(session, decoded));
+    }
 
-            var connection = getConnection(command.getAuthString(), session);
+    private void handleCommand(Session session, GameCommand command) {
+        Connection connection = null;
+        try {
+            connection = getConnection(command.getAuthString(), session);
             if (connection != null) {
                 switch (command.getCommandType()) {
-                    case CONNECT -> join(connection, readJson(message, JoinPlayerCommand.class));
-                    case MAKE_MOVE -> move(connection, readJson(message, MoveCommand.class));
+                    case CONNECT -> join(connection, (JoinPlayerCommand) command);
+                    case MAKE_MOVE -> move(connection, (MoveCommand) command);
                     case LEAVE -> leave(connection, command);
                     case RESIGN -> resign(connection, command);
+                    case RESYNC -> resync(connection, command);
                 }
             } else {
                 Connection.sendError(session.getRemote(), "unknown user");
             }
         } catch (Exception e) {
-            Connection.sendError(session.getRemote(), util.ExceptionUtil.getRootCause(e).getMessage());
+            var msg = util.ExceptionUtil.getRootCause(e).getMessage();
+            try {
+                if (connection != null) {
+                    // Behind whatever is already queued for the session
+                    connection.sendError(msg);
+                } else {
+                    Connection.sendError(session.getRemote(), msg);
+                }
+            } catch (Exception sendFailure) {
+                Server.LOG.fine("Could not report error to closed session: " + sendFailure.getMessage());
+            }
         }
     }
 
@@ -147,11 +310,13 @@ public class WebSocketHandler {
         var gameData = dataAccess.readGame(command.gameID);
 
         if (gameData != null) {
+            connection.moveDeltas = command.moveDeltas;
             // Check if the player is already in the game, both player data can already be in the game
             var expectedUsername = StringUtil.isEqual(gameData.whiteUsername(), connection.user.username()) ?
                     gameData.whiteUsername() : gameData.blackUsername();
             if (StringUtil.isEqual(expectedUsername, connection.user.username())) {
-                connection.game = gameData;
+                connections.enter(connection, gameData);
+                connection.outbox.setCoalescing(false);
                 var loadMsg = (new LoadMessage(gameData)).toString();
                 connection.send(loadMsg);
 
@@ -161,7 +326,9 @@ public class WebSocketHandler {
             }
             // more players can join as observers
             else {
-                connection.game = gameData;
+                connections.enter(connection, gameData);
+                // Observers only need the latest board if they fall behind
+                connection.outbox.setCoalescing(true);
                 var loadMsg = (new LoadMessage(gameData)).toString();
                 connection.send(loadMsg);
 
@@ -185,16 +352,32 @@ public class WebSocketHandler {
             if (!gameData.isGameOver()) {
                 if (isTurn(gameData, command.move, connection.user.username())) {
                     gameData.game().makeMove(command.move);
-                    var notificationMsg = (new NotificationMessage(String.format("%s moved %s",
-                            connection.user.username(), command.move))).toString();
-                    connections.broadcast(gameData.gameID(), connection.user.username(), notificationMsg);
-
-                    gameData = handleGameState(gameData);
-                    dataAccess.updateGame(gameData);
-                    connection.game = gameData;
-
-                    var loadMsg = (new LoadMessage(gameData)).toString();
-                    connections.broadcast(gameData.gameID(), "", loadMsg);
+                    var fanOut = new FanOutMetrics.Move();
+                    var notificationMsg = EncodedMessage.of((new NotificationMessage(String.format("%s moved %s",
+                            connection.user.username(), command.move))).toString());
+                    fanOut.add(connections.broadcast(gameData.gameID(), connection.user.username(), notificationMsg), notificationMsg);
+
+                    gameData = handleGameState(connection, gameData, fanOut);
+                    dataAccess.appendMove(gameData, command.move);
+                    connections.enter(connection, gameData);
+
+                    // The rest of the room is sent each update before the player who moved
+                    var username = connection.user.username();
+                    // The full game is only serialized if someone still takes LOAD_GAME after a move,
+                    // including a coalescing outbox that swaps a superseded delta for it
+                    var current = gameData;
+                    var coalesceKey = "LOAD_GAME:" + gameData.gameID();
+                    var loadMsg = EncodedMessage.lazy(coalesceKey, () -> (new LoadMessage(current)).toString());
+                    var deltaMsg = EncodedMessage.delta(coalesceKey, loadMsg, (new MoveAppliedMessage(gameData, command.move)).toString());
+                    var loadSent = connections.broadcast(gameData.gameID(), username, loadMsg, c -> !c.moveDeltas);
+                    if (loadSent > 0) {
+                        fanOut.add(loadSent, loadMsg.get());
+                    }
+                    fanOut.add(connections.broadcast(gameData.gameID(), username, deltaMsg, c -> c.moveDeltas), deltaMsg);
+                    var ownMsg = connection.moveDeltas ? deltaMsg : loadMsg.get();
+                    connection.send(ownMsg);
+                    fanOut.add(1, ownMsg);
+                    fanOutMetrics.record(fanOut);
                 } else {
                     connection.sendError("invalid move: " + command.move);
                 }
@@ -225,7 +408,7 @@ public class WebSocketHandler {
                 var state = playerColor == ChessGame.TeamColor.WHITE ? GameData.State.BLACK : GameData.State.WHITE;
                 gameData = gameData.setState(state);
                 dataAccess.updateGame(gameData);
-                connection.game = gameData;
+                connections.enter(connection, gameData);
 
                 var notificationMessage = (new NotificationMessage(String.format("%s resigned", connection.user.username()))).toString();
                 connections.broadcast(gameData.gameID(), "", notificationMessage);
@@ -237,6 +420,21 @@ public class WebSocketHandler {
         }
     }
 
+    /**
+     * Sends the full game to a client whose copy no longer matches the server's
+     * @param connection the connection
+     * @param command the command
+     * @throws Exception if there is an error sending the game
+     */
+    private void resync(Connection connection, GameCommand command) throws Exception {
+        var gameData = dataAccess.readGame(command.gameID);
+        if (gameData != null) {
+            connection.send((new LoadMessage(gameData)).toString());
+        } else {
+            connection.sendError("game not found");
+        }
+    }
+
     /**
      * Handles user leaving the game
      * @param connection the connection
@@ -290,31 +488,53 @@ public class WebSocketHandler {
     }
 
     /**
-     * Handles the game state
+     * Handles the game state after a move, ending the game and notifying the players
+     * when it is over or the next player is in check
+     * @param connection the connection of the player who moved
      * @param gameData
+     * @param fanOut tally of the messages sent for the move
      * @return the game data
      * @throws Exception
      */
-    private GameData handleGameState(GameData gameData) throws Exception {
+    private GameData handleGameState(Connection connection, GameData gameData, FanOutMetrics.Move fanOut) throws Exception {
         NotificationMessage notificationMessage = null;
-        var game = gameData.game();
-        if (game.isInStalemate(WHITE) || game.isInStalemate(BLACK)) {
-            gameData = gameData.setState(GameData.State.DRAW);
-            notificationMessage = new NotificationMessage("Game Over (Stalemate) The game is a draw");
-        } else if (game.isInCheckmate(WHITE)) {
-            gameData = gameData.setState(GameData.State.BLACK);
-            notificationMessage = new NotificationMessage(String.format("Game Over, Black player, %s, wins!", gameData.blackUsername()));
-        } else if (game.isInCheckmate(BLACK)) {
-            gameData = gameData.setState(GameData.State.WHITE);
-            notificationMessage = new NotificationMessage(String.format("Game Over, White player, %s, wins!", gameData.whiteUsername()));
-        } else if (game.isInCheck(WHITE)) {
-            notificationMessage = new NotificationMessage(String.format("Check, White player %s is in check", gameData.whiteUsername()));
-        } else if (game.isInCheck(BLACK)) {
-            notificationMessage = new NotificationMessage(String.format("Check, Black player %s is in check", gameData.blackUsername()));
+        var status = gameData.game().evaluateStatus();
+        switch (status.outcome()) {
+            case CHECKMATE -> {
+                if (status.winner() == WHITE) {
+                    gameData = gameData.setState(GameData.State.WHITE);
+                    notificationMessage = new NotificationMessage(String.format("Game Over, White player, %s, wins!", gameData.whiteUsername()));
+                } else {
+                    gameData = gameData.setState(GameData.State.BLACK);
+                    notificationMessage = new NotificationMessage(String.format("Game Over, Black player, %s, wins!", gameData.blackUsername()));
+                }
+            }
+            case STALEMATE -> {
+                gameData = gameData.setState(GameData.State.DRAW);
+                notificationMessage = new NotificationMessage("Game Over (Stalemate) The game is a draw");
+            }
+            case INSUFFICIENT_MATERIAL -> {
+                gameData = gameData.setState(GameData.State.DRAW);
+                notificationMessage = new NotificationMessage("Game Over (Insufficient material) The game is a draw");
+            }
+            case FIFTY_MOVE_RULE -> {
+                gameData = gameData.setState(GameData.State.DRAW);
+                notificationMessage = new NotificationMessage("Game Over (Fifty-move rule) The game is a draw");
+            }
+            case IN_PROGRESS -> {
+                if (status.check() && status.turn() == WHITE) {
+                    notificationMessage = new NotificationMessage(String.format("Check, White player %s is in check", gameData.whiteUsername()));
+                } else if (status.check()) {
+                    notificationMessage = new NotificationMessage(String.format("Check, Black player %s is in check", gameData.blackUsername()));
+                }
+            }
         }
 
         if (notificationMessage != null) {
-            connections.broadcast(gameData.gameID(), "", notificationMessage.toString());
+            var msg = EncodedMessage.of(notificationMessage.toString());
+            fanOut.add(connections.broadcast(gameData.gameID(), connection.user.username(), msg), msg);
+            connection.send(msg);
+            fanOut.add(1, msg);
         }
         return gameData;
     }
@@ -333,8 +553,8 @@ public class WebSocketHandler {
             connection = connections.get(authData.username());
             if (connection == null) {
                 var user = dataAccess.readUser(authData.username());
-                connection = new Connection(user, session);
-                connections.add(authData.username(), connection);
+                connection = connections.getOrAdd(authData.username(),
+                        name -> new Connection(user, session, new Outbox(session, outboxPolicy, outboxCounters)));
             }
         }
         return connection;
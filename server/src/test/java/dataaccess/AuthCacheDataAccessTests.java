@@ -0,0 +1,94 @@
+package dataaccess;
+
+import model.AuthData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+public class AuthCacheDataAccessTests {
+    /**
+     * Memory store that counts the token lookups that reach it
+     */
+    private static class CountingDataAccess extends MemoryDataAccess {
+        int reads;
+
+        @Override
+        public AuthData readAuth(String token) {
+            reads++;
+            return super.readAuth(token);
+        }
+    }
+
+    private CountingDataAccess store;
+    private long now;
+
+    @BeforeEach
+    public void setup() {
+        store = new CountingDataAccess();
+        now = 0;
+    }
+
+    private AuthCacheDataAccess cache(int maxSize) {
+        return new AuthCacheDataAccess(store, Duration.ofSeconds(10), maxSize, () -> now);
+    }
+
+    @Test
+    @DisplayName("Cached tokens are read once")
+    public void readThrough() throws Exception {
+        var cache = cache(10);
+        var auth = store.writeAuth("alice");
+
+        Assertions.assertEquals(auth, cache.readAuth(auth.authToken()));
+        Assertions.assertEquals(auth, cache.readAuth(auth.authToken()));
+        Assertions.assertEquals(1, store.reads);
+
+        Assertions.assertNull(cache.readAuth("unknown"));
+        Assertions.assertNull(cache.readAuth("unknown"));
+        Assertions.assertEquals(3, store.reads);
+
+        var stats = cache.stats();
+        Assertions.assertEquals(1, stats.hits());
+        Assertions.assertEquals(3, stats.misses());
+        Assertions.assertEquals(1, stats.size());
+    }
+
+    @Test
+    @DisplayName("Deleted and cleared tokens are invalid immediately")
+    public void invalidation() throws Exception {
+        var cache = cache(10);
+        var auth = cache.writeAuth("alice");
+        Assertions.assertEquals(auth, cache.readAuth(auth.authToken()));
+        Assertions.assertEquals(0, store.reads);
+
+        cache.deleteAuth(auth.authToken());
+        Assertions.assertNull(cache.readAuth(auth.authToken()));
+
+        var other = cache.writeAuth("bob");
+        cache.clear();
+        Assertions.assertNull(cache.readAuth(other.authToken()));
+        Assertions.assertEquals(0, cache.stats().size());
+    }
+
+    @Test
+    @DisplayName("Tokens expire and the cache stays bounded")
+    public void expiryAndBound() throws Exception {
+        var cache = cache(2);
+        var auth = cache.writeAuth("alice");
+
+        now += Duration.ofSeconds(11).toNanos();
+        Assertions.assertEquals(auth, cache.readAuth(auth.authToken()));
+        Assertions.assertEquals(1, store.reads);
+
+        cache.writeAuth("bob");
+        cache.writeAuth("carol");
+        var stats = cache.stats();
+        Assertions.assertEquals(2, stats.size());
+        Assertions.assertEquals(1, stats.evictions());
+
+        Assertions.assertEquals(auth, cache.readAuth(auth.authToken()));
+        Assertions.assertEquals(2, store.reads);
+    }
+}
@@ -0,0 +1,179 @@
+package dataaccess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ConnectionPoolTests {
+    /**
+     * Stand-in for a physical connection that only tracks whether it is open and valid
+     */
+    private static class FakeConnection {
+        boolean closed;
+        boolean valid = true;
+        boolean autoCommit = true;
+        int rollbacks;
+
+        Connection proxy() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "close" -> {
+                            closed = true;
+                            yield null;
+                        }
+                        case "isClosed" -> closed;
+                        case "isValid" -> valid && !closed;
+                        case "getAutoCommit" -> autoCommit;
+                        case "setAutoCommit" -> {
+                            autoCommit = (Boolean) args[0];
+                            yield null;
+                        }
+                        case "rollback" -> {
+                            rollbacks++;
+                            yield null;
+                        }
+                        case "prepareStatement" -> statement((Connection) proxy);
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "equals" -> proxy == args[0];
+                        default -> null;
+                    });
+        }
+    }
+
+    /**
+     * A statement that, like a driver's, leads back to the physical connection
+     */
+    private static Statement statement(Connection connection) {
+        return (Statement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                (proxy, method, args) -> method.getName().equals("getConnection") ? connection : null);
+    }
+
+    private final List<FakeConnection> opened = new ArrayList<>();
+
+    private ConnectionPool pool(int maxSize, Duration maxWait, Duration idleTimeout) {
+        return new ConnectionPool(() -> {
+            var connection = new FakeConnection();
+            opened.add(connection);
+            return connection.proxy();
+        }, maxSize, maxWait, idleTimeout);
+    }
+
+    @Test
+    @DisplayName("Returned connections are reused")
+    public void reuse() throws Exception {
+        try (var pool = pool(2, Duration.ofSeconds(1), Duration.ofMinutes(10))) {
+            for (var i = 0; i < 5; i++) {
+                try (var conn = pool.getConnection()) {
+                    Assertions.assertFalse(conn.isClosed());
+                }
+            }
+            Assertions.assertEquals(1, opened.size());
+            Assertions.assertFalse(opened.getFirst().closed);
+
+            var metrics = pool.metrics();
+            Assertions.assertEquals(5, metrics.borrowed());
+            Assertions.assertEquals(1, metrics.created());
+            Assertions.assertEquals(0, metrics.active());
+            Assertions.assertEquals(1, metrics.idle());
+        }
+        Assertions.assertTrue(opened.getFirst().closed);
+    }
+
+    @Test
+    @DisplayName("Borrowing from an exhausted pool times out")
+    public void boundedSize() throws Exception {
+        try (var pool = pool(2, Duration.ofMillis(50), Duration.ofMinutes(10))) {
+            var first = pool.getConnection();
+            var second = pool.getConnection();
+            Assertions.assertEquals(2, pool.metrics().active());
+            Assertions.assertThrows(SQLException.class, pool::getConnection);
+            Assertions.assertEquals(1, pool.metrics().timeouts());
+
+            first.close();
+            first.close();
+            Assertions.assertTrue(first.isClosed());
+            Assertions.assertThrows(SQLException.class, () -> first.prepareStatement("SELECT 1"));
+
+            try (var third = pool.getConnection()) {
+                Assertions.assertNotNull(third);
+            }
+            second.close();
+            Assertions.assertEquals(2, opened.size());
+        }
+    }
+
+    @Test
+    @DisplayName("Idle and invalid connections are discarded")
+    public void eviction() throws Exception {
+        try (var pool = pool(2, Duration.ofSeconds(1), Duration.ZERO)) {
+            pool.getConnection().close();
+            pool.evictIdle();
+            Assertions.assertTrue(opened.getFirst().closed);
+            Assertions.assertEquals(0, pool.metrics().idle());
+            Assertions.assertEquals(1, pool.metrics().evicted());
+        }
+
+        opened.clear();
+        try (var pool = pool(2, Duration.ofSeconds(1), Duration.ofMinutes(10))) {
+            pool.getConnection().close();
+            opened.getFirst().closed = true;
+            try (var conn = pool.getConnection()) {
+                Assertions.assertFalse(conn.isClosed());
+            }
+            Assertions.assertEquals(2, opened.size());
+        }
+    }
+
+    @Test
+    @DisplayName("Idle connections are closed even if the pool is not used again")
+    public void scheduledEviction() throws Exception {
+        try (var pool = pool(2, Duration.ofSeconds(1), Duration.ofMillis(20))) {
+            pool.getConnection().close();
+            for (var i = 0; i < 100 && !opened.getFirst().closed; i++) {
+                Thread.sleep(10);
+            }
+            Assertions.assertTrue(opened.getFirst().closed);
+            Assertions.assertEquals(0, pool.metrics().idle());
+        }
+    }
+
+    @Test
+    @DisplayName("Statements lead back to the pooled connection, not the physical one")
+    public void statementConnection() throws Exception {
+        try (var pool = pool(1, Duration.ofMillis(50), Duration.ofMinutes(10))) {
+            var conn = pool.getConnection();
+            var stmt = conn.prepareStatement("SELECT 1");
+            Assertions.assertSame(conn, stmt.getConnection());
+
+            stmt.getConnection().close();
+            Assertions.assertTrue(conn.isClosed());
+            Assertions.assertFalse(opened.getFirst().closed);
+            Assertions.assertEquals(0, pool.metrics().active());
+            try (var again = pool.getConnection()) {
+                Assertions.assertNotNull(again);
+            }
+            Assertions.assertEquals(1, opened.size());
+        }
+    }
+
+    @Test
+    @DisplayName("Open transactions are rolled back on return")
+    public void rollbackOnReturn() throws Exception {
+        try (var pool = pool(1, Duration.ofSeconds(1), Duration.ofMinutes(10))) {
+            try (var conn = pool.getConnection()) {
+                conn.setAutoCommit(false);
+            }
+            Assertions.assertEquals(1, opened.getFirst().rollbacks);
+            Assertions.assertTrue(opened.getFirst().autoCommit);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package dataaccess;
 
+import chess.ChessMove;
 import model.UserData;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
@@ -130,6 +131,39 @@ public class DataAccessTests {
         Assertions.assertNull(nonExistentGame);
     }
 
+    @ParameterizedTest
+    @ValueSource(classes = {MySqlDataAccess.class, MemoryDataAccess.class})
+    @DisplayName("Positive Test: Append Moves and Load Game")
+    public void appendMoveLoadGamePositive(Class<? extends DataAccess> dbClass) throws Exception {
+        DataAccess db = startDataBase(dbClass);
+
+        // Positive test: more moves than fit between two snapshots are all replayed
+        var gameData = db.newGame("blitz");
+        var moves = "g1f3 g8f6 f3g1 f6g8".split(" ");
+        for (var i = 0; i < MySqlDataAccess.SNAPSHOT_INTERVAL + 3; i++) {
+            var move = new ChessMove(moves[i % moves.length]);
+            gameData.game().makeMove(move);
+            db.appendMove(gameData, move);
+        }
+
+        var loadedGame = db.loadGame(gameData.gameID());
+        Assertions.assertEquals(gameData.game(), loadedGame.game());
+        Assertions.assertEquals(gameData.game().getTeamTurn(), loadedGame.game().getTeamTurn());
+        Assertions.assertEquals(gameData.game().getBoard().getHistory(), loadedGame.game().getBoard().getHistory());
+        Assertions.assertEquals(loadedGame, db.readGame(gameData.gameID()));
+        Assertions.assertIterableEquals(List.of(loadedGame), db.listGames());
+    }
+
+    @ParameterizedTest
+    @ValueSource(classes = {MySqlDataAccess.class, MemoryDataAccess.class})
+    @DisplayName("Negative Test: Load Non-Existent Game")
+    public void appendMoveLoadGameNegative(Class<? extends DataAccess> dbClass) throws Exception {
+        DataAccess db = startDataBase(dbClass);
+
+        // Negative test: Load non-existent game
+        Assertions.assertNull(db.loadGame(-1));
+    }
+
     @ParameterizedTest
     @ValueSource(classes = {MySqlDataAccess.class, MemoryDataAccess.class})
     @DisplayName("Positive Test: List Games")
@@ -0,0 +1,90 @@
+package dataaccess;
+
+import chess.ChessMove;
+import chess.ChessPosition;
+import model.GameData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+public class GameCacheDataAccessTests {
+    /**
+     * Memory store that counts the game reads that reach it and can be made to fail writes
+     */
+    private static class CountingDataAccess extends MemoryDataAccess {
+        int reads;
+        boolean failWrites;
+
+        @Override
+        public GameData loadGame(int gameID) {
+            reads++;
+            return super.loadGame(gameID);
+        }
+
+        @Override
+        public void appendMove(GameData game, ChessMove move) {
+            if (failWrites) {
+                throw new IllegalStateException("write failed");
+            }
+            super.appendMove(game, move);
+        }
+    }
+
+    private CountingDataAccess store;
+    private GameCacheDataAccess cache;
+    private long now;
+
+    @BeforeEach
+    public void setup() {
+        store = new CountingDataAccess();
+        now = 0;
+        cache = new GameCacheDataAccess(store, Duration.ofMinutes(1), () -> now);
+    }
+
+    @Test
+    @DisplayName("Active games are read from memory")
+    public void readFromMemory() throws Exception {
+        var gameData = cache.newGame("cached");
+        Assertions.assertSame(gameData, cache.readGame(gameData.gameID()));
+
+        var joined = gameData.setWhite("alice");
+        cache.updateGame(joined);
+        Assertions.assertSame(joined, cache.readGame(gameData.gameID()));
+        Assertions.assertEquals(0, store.reads);
+        Assertions.assertEquals(2, cache.stats().hits());
+
+        Assertions.assertNull(cache.readGame(-1));
+        Assertions.assertEquals(1, store.reads);
+    }
+
+    @Test
+    @DisplayName("Inactive games are evicted")
+    public void idleEviction() throws Exception {
+        var gameData = store.newGame("cold");
+        cache.readGame(gameData.gameID());
+        Assertions.assertEquals(1, cache.stats().size());
+
+        now += Duration.ofMinutes(2).toNanos();
+        cache.readGame(gameData.gameID());
+        Assertions.assertEquals(2, store.reads);
+        Assertions.assertEquals(1, cache.stats().evictions());
+    }
+
+    @Test
+    @DisplayName("A failed write evicts the game")
+    public void evictOnWriteFailure() throws Exception {
+        var gameData = cache.newGame("failing");
+        var move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        gameData.game().makeMove(move);
+
+        store.failWrites = true;
+        Assertions.assertThrows(IllegalStateException.class, () -> cache.appendMove(gameData, move));
+        Assertions.assertEquals(0, cache.stats().size());
+
+        cache.readGame(gameData.gameID());
+        Assertions.assertEquals(1, store.reads);
+    }
+}
@@ -0,0 +1,112 @@
+package server;
+
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.common.WebSocketRemoteEndpoint;
+import org.eclipse.jetty.websocket.common.io.FutureWriteCallback;
+import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.websocket.ContainerProvider;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.MessageHandler;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class EncodedMessageTests {
+    private static final int SESSIONS = 3;
+
+    /**
+     * Client that collects the text messages it receives
+     */
+    private static class Receiver extends Endpoint {
+        final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onOpen(javax.websocket.Session session, EndpointConfig config) {
+            session.addMessageHandler(new MessageHandler.Whole<String>() {
+                @Override
+                public void onMessage(String message) {
+                    received.add(message);
+                }
+            });
+        }
+    }
+
+    private org.eclipse.jetty.server.Server jetty;
+    private final BlockingQueue<Session> serverSessions = new LinkedBlockingQueue<>();
+    private final List<Receiver> receivers = new ArrayList<>();
+    private final List<javax.websocket.Session> clientSessions = new ArrayList<>();
+
+    @BeforeEach
+    public void setup() throws Exception {
+        jetty = new org.eclipse.jetty.server.Server(0);
+        jetty.setHandler(new org.eclipse.jetty.websocket.server.WebSocketHandler() {
+            @Override
+            public void configure(WebSocketServletFactory factory) {
+                factory.setCreator((req, res) -> new WebSocketAdapter() {
+                    @Override
+                    public void onWebSocketConnect(Session session) {
+                        super.onWebSocketConnect(session);
+                        serverSessions.add(session);
+                    }
+                });
+            }
+        });
+        jetty.start();
+        var port = ((ServerConnector) jetty.getConnectors()[0]).getLocalPort();
+
+        var container = ContainerProvider.getWebSocketContainer();
+        for (var i = 0; i < SESSIONS; i++) {
+            var receiver = new Receiver();
+            receivers.add(receiver);
+            clientSessions.add(container.connectToServer(receiver, URI.create("ws://localhost:" + port + "/")));
+        }
+    }
+
+    @AfterEach
+    public void teardown() throws Exception {
+        for (var session : clientSessions) {
+            session.close();
+        }
+        jetty.stop();
+    }
+
+    @Test
+    @DisplayName("One encoded message reaches every session intact as text")
+    public void sharedBuffer() throws Exception {
+        var text = "{\"message\":\"♔ e1g1 ♚ é\",\"board\":\"" + "rnbqkbnr/pppppppp/8/8".repeat(500) + "\"}";
+        var msg = EncodedMessage.of(text);
+        var size = msg.size();
+
+        for (var i = 0; i < SESSIONS; i++) {
+            var session = serverSessions.poll(5, TimeUnit.SECONDS);
+            // The frame path, not the sendString fallback
+            Assertions.assertInstanceOf(WebSocketRemoteEndpoint.class, session.getRemote());
+            var callback = new FutureWriteCallback();
+            msg.send(session.getRemote(), callback);
+            callback.get(5, TimeUnit.SECONDS);
+        }
+
+        for (var receiver : receivers) {
+            Assertions.assertEquals(text, receiver.received.poll(5, TimeUnit.SECONDS));
+        }
+        // Sends only moved their own views; the shared bytes are still whole
+        Assertions.assertEquals(size, msg.size());
+        var payload = msg.payload();
+        var bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        Assertions.assertEquals(text, new String(bytes, StandardCharsets.UTF_8));
+    }
+}
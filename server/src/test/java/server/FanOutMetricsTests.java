@@ -0,0 +1,50 @@
+package server;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class FanOutMetricsTests {
+    @Test
+    @DisplayName("Each message counts once per recipient")
+    public void perRecipient() {
+        var metrics = new FanOutMetrics();
+        var move = new FanOutMetrics.Move();
+        move.add(3, EncodedMessage.of("load"));
+        move.add(1, EncodedMessage.of("note"));
+        metrics.record(move);
+
+        var snapshot = metrics.snapshot();
+        Assertions.assertEquals(1, snapshot.moves());
+        Assertions.assertEquals(4, snapshot.frames());
+        Assertions.assertEquals(16, snapshot.bytes());
+        Assertions.assertEquals(16, snapshot.maxMoveBytes());
+    }
+
+    @Test
+    @DisplayName("Totals add up across moves and the largest move is kept")
+    public void acrossMoves() {
+        var metrics = new FanOutMetrics();
+        var small = new FanOutMetrics.Move();
+        small.add(2, EncodedMessage.of("ab"));
+        var large = new FanOutMetrics.Move();
+        large.add(2, EncodedMessage.of("abcdef"));
+        metrics.record(large);
+        metrics.record(small);
+
+        var snapshot = metrics.snapshot();
+        Assertions.assertEquals(2, snapshot.moves());
+        Assertions.assertEquals(4, snapshot.frames());
+        Assertions.assertEquals(16, snapshot.bytes());
+        Assertions.assertEquals(12, snapshot.maxMoveBytes());
+        Assertions.assertEquals(8.0, snapshot.bytesPerMove());
+    }
+
+    @Test
+    @DisplayName("Nothing recorded reports zeros")
+    public void empty() {
+        var snapshot = new FanOutMetrics().snapshot();
+        Assertions.assertEquals(0, snapshot.moves());
+        Assertions.assertEquals(0.0, snapshot.bytesPerMove());
+    }
+}
@@ -0,0 +1,87 @@
+package server;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+public class GameDispatcherTests {
+
+    @Test
+    @DisplayName("Commands for one game run in order, one at a time")
+    public void perGameOrder() throws Exception {
+        var dispatcher = new GameDispatcher();
+        var order = Collections.synchronizedList(new ArrayList<Integer>());
+        var running = new AtomicInteger();
+        var overlap = new AtomicBoolean();
+        var done = new CountDownLatch(200);
+
+        for (var i = 0; i < 200; i++) {
+            var n = i;
+            dispatcher.dispatch(1, () -> {
+                try {
+                    if (running.incrementAndGet() > 1) {
+                        overlap.set(true);
+                    }
+                    order.add(n);
+                    if (n % 50 == 0) {
+                        throw new IllegalStateException("failed command");
+                    }
+                } finally {
+                    running.decrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+
+        Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assertions.assertFalse(overlap.get());
+        Assertions.assertEquals(IntStream.range(0, 200).boxed().toList(), order);
+    }
+
+    @Test
+    @DisplayName("A slow game doesn't hold up other games")
+    public void gamesIndependent() throws Exception {
+        var dispatcher = new GameDispatcher();
+        var release = new CountDownLatch(1);
+        var other = new CountDownLatch(1);
+
+        dispatcher.dispatch(1, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        dispatcher.dispatch(2, other::countDown);
+
+        Assertions.assertTrue(other.await(2, TimeUnit.SECONDS));
+        release.countDown();
+
+        var drained = new CountDownLatch(1);
+        dispatcher.dispatch(1, drained::countDown);
+        Assertions.assertTrue(drained.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("Calls return the task's result or rethrow its exception")
+    public void call() throws Exception {
+        var dispatcher = new GameDispatcher();
+        var counter = new int[1];
+        for (var i = 0; i < 100; i++) {
+            dispatcher.dispatch(3, () -> counter[0]++);
+        }
+        // Queued behind the dispatched tasks, so it sees all of them
+        Assertions.assertEquals(100, dispatcher.call(3, () -> counter[0]));
+        Assertions.assertThrows(util.CodedException.class, () -> dispatcher.call(3, () -> {
+            throw new util.CodedException(403, "Color taken");
+        }));
+    }
+}
@@ -0,0 +1,226 @@
+package server;
+
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class OutboxTests {
+    /**
+     * Session whose writes stay pending until the test completes them
+     */
+    private static class SlowSession {
+        final List<String> written = new ArrayList<>();
+        final ArrayDeque<WriteCallback> pending = new ArrayDeque<>();
+        Integer closeStatus;
+
+        Session proxy() {
+            var remote = (RemoteEndpoint) Proxy.newProxyInstance(RemoteEndpoint.class.getClassLoader(),
+                    new Class<?>[]{RemoteEndpoint.class}, (proxy, method, args) -> {
+                        if (method.getName().equals("sendString") && args.length == 2) {
+                            written.add((String) args[0]);
+                            pending.add((WriteCallback) args[1]);
+                        }
+                        return null;
+                    });
+            return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[]{Session.class},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "getRemote" -> remote;
+                        case "close" -> {
+                            closeStatus = (Integer) args[0];
+                            yield null;
+                        }
+                        default -> null;
+                    });
+        }
+
+        void complete() {
+            pending.poll().writeSuccess();
+        }
+
+        void fail() {
+            pending.poll().writeFailed(new IOException("Broken pipe"));
+        }
+    }
+
+    private SlowSession session;
+    private Outbox.Counters counters;
+
+    @BeforeEach
+    public void setup() {
+        session = new SlowSession();
+        counters = new Outbox.Counters();
+    }
+
+    @Test
+    @DisplayName("Messages are written one at a time, in order")
+    public void inOrder() {
+        var outbox = new Outbox(session.proxy(), new Outbox.Policy(10, Outbox.Overflow.DISCONNECT), counters);
+        outbox.send(EncodedMessage.of("a"));
+        outbox.send(EncodedMessage.of("b"));
+        outbox.send(EncodedMessage.of("c"));
+        Assertions.assertEquals(List.of("a"), session.written);
+        Assertions.assertEquals(3, outbox.depth());
+
+        session.complete();
+        session.complete();
+        session.complete();
+        Assertions.assertEquals(List.of("a", "b", "c"), session.written);
+        Assertions.assertEquals(0, outbox.depth());
+        Assertions.assertEquals(3, counters.snapshot(List.of(outbox)).sent());
+    }
+
+    @Test
+    @DisplayName("A slow session loses its oldest messages under DROP_OLDEST")
+    public void dropOldest() {
+        var outbox = new Outbox(session.proxy(), new Outbox.Policy(2, Outbox.Overflow.DROP_OLDEST), counters);
+        for (var msg : List.of("a", "b", "c", "d")) {
+            outbox.send(EncodedMessage.of(msg));
+        }
+        var metrics = counters.snapshot(List.of(outbox));
+        Assertions.assertEquals(1, metrics.dropped());
+        Assertions.assertEquals(3, metrics.queued());
+        Assertions.assertEquals(2, metrics.peakDepth());
+
+        session.complete();
+        session.complete();
+        session.complete();
+        Assertions.assertEquals(List.of("a", "c", "d"), session.written);
+        Assertions.assertNull(session.closeStatus);
+    }
+
+    @Test
+    @DisplayName("A slow session is closed under DISCONNECT")
+    public void disconnect() {
+        var outbox = new Outbox(session.proxy(), new Outbox.Policy(2, Outbox.Overflow.DISCONNECT), counters);
+        for (var msg : List.of("a", "b", "c", "d")) {
+            outbox.send(EncodedMessage.of(msg));
+        }
+        Assertions.assertNotNull(session.closeStatus);
+        Assertions.assertEquals(1, counters.snapshot(List.of(outbox)).disconnected());
+
+        session.complete();
+        Assertions.assertEquals(List.of("a"), session.written);
+        Assertions.assertEquals(0, outbox.depth());
+    }
+
+    @Test
+    @DisplayName("A failed write closes the session and drops what was queued")
+    public void writeFailed() {
+        var outbox = new Outbox(session.proxy(), new Outbox.Policy(10, Outbox.Overflow.DISCONNECT), counters);
+        outbox.send(EncodedMessage.of("a"));
+        outbox.send(EncodedMessage.of("b"));
+        session.fail();
+        Assertions.assertNotNull(session.closeStatus);
+        Assertions.assertEquals(0, outbox.depth());
+        Assertions.assertEquals(1, counters.snapshot(List.of(outbox)).failed());
+
+        outbox.send(EncodedMessage.of("c"));
+        Assertions.assertEquals(List.of("a"), session.written);
+        Assertions.assertEquals(0, outbox.depth());
+    }
+
+    @Test
+    @DisplayName("An observer that is behind only gets the latest board")
+    public void coalesce() {
+        var outbox = new Outbox(session.proxy(), new Outbox.Policy(10, Outbox.Overflow.DISCONNECT), counters);
+        outbox.setCoalescing(true);
+        outbox.send(EncodedMessage.coalescing("LOAD_GAME:1", "load 1"));
+        outbox.send(EncodedMessage.of("moved 2"));
+        outbox.send(EncodedMessage.coalescing("LOAD_GAME:1", "load 2"));
+        outbox.send(EncodedMessage.of("moved 3"));
+        outbox.send(EncodedMessage.coalescing("LOAD_GAME:1", "load 3"));
+        Assertions.assertEquals(4, outbox.depth());
+
+        while (!session.pending.isEmpty()) {
+            session.complete();
+        }
+        Assertions.assertEquals(List.of("load 1", "moved 2", "moved 3", "load 3"), session.written);
+        Assertions.assertEquals(1, counters.snapshot(List.of(outbox)).coalesced());
+    }
+
+    @Test
+    @DisplayName("An observer on move deltas that is behind gets the latest board instead")
+    public void coalesceDeltas() {
+        var outbox = new Outbox(session.proxy(), new Outbox.Policy(10, Outbox.Overflow.DISCONNECT), counters);
+        outbox.setCoalescing(true);
+        for (var ply : List.of(1, 2, 3, 4)) {
+            var load = EncodedMessage.lazy("LOAD_GAME:1", () -> "load " + ply);
+            outbox.send(EncodedMessage.delta("LOAD_GAME:1", load, "delta " + ply));
+        }
+        Assertions.assertEquals(2, outbox.depth());
+
+        session.complete();
+        var load = EncodedMessage.lazy("LOAD_GAME:1", () -> "load 5");
+        outbox.send(EncodedMessage.delta("LOAD_GAME:1", load, "delta 5"));
+        while (!session.pending.isEmpty()) {
+            session.complete();
+        }
+        // Once the board is sent the client is caught up, so deltas can follow it again
+        Assertions.assertEquals(List.of("delta 1", "load 4", "delta 5"), session.written);
+        Assertions.assertEquals(2, counters.snapshot(List.of(outbox)).coalesced());
+    }
+
+    @Test
+    @DisplayName("A delta's board is only built when a waiting message is replaced")
+    public void lazyFullState() {
+        var outbox = new Outbox(session.proxy(), new Outbox.Policy(10, Outbox.Overflow.DISCONNECT), counters);
+        outbox.setCoalescing(true);
+        var encoded = new AtomicInteger();
+        // Only the first delta is on the wire; the notification waiting behind it has no key
+        for (var ply : List.of(1, 2)) {
+            var load = EncodedMessage.lazy("LOAD_GAME:1", () -> {
+                encoded.incrementAndGet();
+                return "load " + ply;
+            });
+            outbox.send(EncodedMessage.delta("LOAD_GAME:1", load, "delta " + ply));
+            if (ply == 1) {
+                outbox.send(EncodedMessage.of("moved 1"));
+            }
+        }
+        while (!session.pending.isEmpty()) {
+            session.complete();
+        }
+        Assertions.assertEquals(List.of("delta 1", "moved 1", "delta 2"), session.written);
+        Assertions.assertEquals(0, encoded.get());
+        Assertions.assertEquals(0, counters.snapshot(List.of(outbox)).coalesced());
+    }
+
+    @Test
+    @DisplayName("A player on move deltas gets every one of them")
+    public void playerDeltas() {
+        var outbox = new Outbox(session.proxy(), new Outbox.Policy(10, Outbox.Overflow.DISCONNECT), counters);
+        for (var ply : List.of(1, 2, 3)) {
+            var load = EncodedMessage.lazy("LOAD_GAME:1", () -> "load " + ply);
+            outbox.send(EncodedMessage.delta("LOAD_GAME:1", load, "delta " + ply));
+        }
+        while (!session.pending.isEmpty()) {
+            session.complete();
+        }
+        Assertions.assertEquals(List.of("delta 1", "delta 2", "delta 3"), session.written);
+    }
+
+    @Test
+    @DisplayName("A player gets every board")
+    public void noCoalesceForPlayers() {
+        var outbox = new Outbox(session.proxy(), new Outbox.Policy(10, Outbox.Overflow.DISCONNECT), counters);
+        outbox.send(EncodedMessage.coalescing("LOAD_GAME:1", "load 1"));
+        outbox.send(EncodedMessage.coalescing("LOAD_GAME:1", "load 2"));
+        outbox.send(EncodedMessage.coalescing("LOAD_GAME:1", "load 3"));
+
+        while (!session.pending.isEmpty()) {
+            session.complete();
+        }
+        Assertions.assertEquals(List.of("load 1", "load 2", "load 3"), session.written);
+    }
+}
@@ -0,0 +1,183 @@
+package chess;
+
+import chess.moves.Attacks;
+
+import java.util.Arrays;
+
+/**
+ * Bitboard index of the pieces on a chessboard: one 64-bit mask per team and piece type.
+ * <p>
+ * Squares are numbered 0 (a1) through 63 (h8), rank by rank, so bit {@code (row - 1) * 8 + (col - 1)}
+ * of a mask is set when the matching {@link ChessPosition} holds a piece.
+ */
+public class Bitboard {
+    public static final long EMPTY = 0L;
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = FILE_A << 7;
+    public static final long RANK_1 = 0xFFL;
+    public static final long RANK_8 = RANK_1 << 56;
+    public static final long LIGHT_SQUARES = 0x55AA55AA55AA55AAL;
+
+    private static final ChessPosition[] POSITIONS = new ChessPosition[64];
+
+    static {
+        for (var sq = 0; sq < 64; sq++) {
+            POSITIONS[sq] = new ChessPosition(row(sq), column(sq));
+        }
+    }
+
+    private final long[] pieces = new long[12];
+    private final long[] teams = new long[2];
+    private long key;
+
+    public Bitboard() {
+    }
+
+    public Bitboard(Bitboard copy) {
+        System.arraycopy(copy.pieces, 0, pieces, 0, pieces.length);
+        System.arraycopy(copy.teams, 0, teams, 0, teams.length);
+        key = copy.key;
+    }
+
+    /**
+     * Builds the index from a row/column grid of pieces
+     *
+     * @param squares the grid, indexed [row - 1][column - 1]
+     */
+    public Bitboard(ChessPiece[][] squares) {
+        for (var i = 0; i < 8; i++) {
+            for (var j = 0; j < 8; j++) {
+                if (squares[i][j] != null) {
+                    add(i * 8 + j, squares[i][j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a piece to an empty square
+     */
+    public void add(int square, ChessPiece piece) {
+        var bit = bit(square);
+        pieces[index(piece.getTeamColor(), piece.getPieceType())] |= bit;
+        teams[piece.getTeamColor().ordinal()] |= bit;
+        key ^= Zobrist.piece(piece, square);
+    }
+
+    /**
+     * Removes a piece from the square it occupies
+     */
+    public void remove(int square, ChessPiece piece) {
+        var bit = ~bit(square);
+        pieces[index(piece.getTeamColor(), piece.getPieceType())] &= bit;
+        teams[piece.getTeamColor().ordinal()] &= bit;
+        key ^= Zobrist.piece(piece, square);
+    }
+
+    /**
+     * @return mask of the squares holding the given team's pieces of the given type
+     */
+    public long pieces(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return pieces[index(color, type)];
+    }
+
+    /**
+     * @return mask of the squares holding any of the given team's pieces
+     */
+    public long team(ChessGame.TeamColor color) {
+        return teams[color.ordinal()];
+    }
+
+    /**
+     * @return mask of every occupied square
+     */
+    public long occupied() {
+        return teams[0] | teams[1];
+    }
+
+    /**
+     * @return Zobrist key of the pieces, updated incrementally by add and remove
+     */
+    public long key() {
+        return key;
+    }
+
+    public boolean isEmpty(int square) {
+        return (occupied() & bit(square)) == 0;
+    }
+
+    /**
+     * Gets the pieces of a team that attack a square. Rather than generating the team's moves, this
+     * probes outward from the square as each piece type and intersects the result with the team's
+     * pieces of that type.
+     *
+     * @param square    the attacked square
+     * @param color     the attacking team
+     * @param occupied  mask of occupied squares that block sliding pieces
+     * @return mask of the attacking pieces
+     */
+    public long attackersTo(int square, ChessGame.TeamColor color, long occupied) {
+        var queens = pieces(color, ChessPiece.PieceType.QUEEN);
+        return (Attacks.pawn(color.opponent(), square) & pieces(color, ChessPiece.PieceType.PAWN))
+                | (Attacks.knight(square) & pieces(color, ChessPiece.PieceType.KNIGHT))
+                | (Attacks.king(square) & pieces(color, ChessPiece.PieceType.KING))
+                | (Attacks.bishop(square, occupied) & (pieces(color, ChessPiece.PieceType.BISHOP) | queens))
+                | (Attacks.rook(square, occupied) & (pieces(color, ChessPiece.PieceType.ROOK) | queens));
+    }
+
+    // Square helpers
+
+    public static int square(int row, int col) {
+        return (row - 1) * 8 + (col - 1);
+    }
+
+    public static int square(ChessPosition position) {
+        return square(position.getRow(), position.getColumn());
+    }
+
+    public static int row(int square) {
+        return (square >>> 3) + 1;
+    }
+
+    public static int column(int square) {
+        return (square & 7) + 1;
+    }
+
+    /**
+     * @return the shared position object for a square index
+     */
+    public static ChessPosition position(int square) {
+        return POSITIONS[square];
+    }
+
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    /**
+     * @return index of the lowest set square in the mask (64 if the mask is empty)
+     */
+    public static int first(long mask) {
+        return Long.numberOfTrailingZeros(mask);
+    }
+
+    private static int index(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return color.ordinal() * 6 + type.ordinal();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return Arrays.equals(pieces, ((Bitboard) o).pieces);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (key ^ (key >>> 32));
+    }
+}
@@ -1,5 +1,7 @@
 package chess;
 
+import chess.moves.Attacks;
+
 import java.util.*;
 
 /**
@@ -10,9 +12,45 @@ import java.util.*;
  */
 public class ChessBoard {
 
+    public static final int WHITE_KING_SIDE = 1;
+    public static final int WHITE_QUEEN_SIDE = 2;
+    public static final int BLACK_KING_SIDE = 4;
+    public static final int BLACK_QUEEN_SIDE = 8;
+    public static final int ALL_CASTLING = 15;
+
+    // Castling rights kept when a move starts or ends on each square
+    private static final int[] CASTLING_MASK = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_MASK, ALL_CASTLING);
+        CASTLING_MASK[Bitboard.square(1, 1)] = ALL_CASTLING & ~WHITE_QUEEN_SIDE;
+        CASTLING_MASK[Bitboard.square(1, 5)] = ALL_CASTLING & ~(WHITE_KING_SIDE | WHITE_QUEEN_SIDE);
+        CASTLING_MASK[Bitboard.square(1, 8)] = ALL_CASTLING & ~WHITE_KING_SIDE;
+        CASTLING_MASK[Bitboard.square(8, 1)] = ALL_CASTLING & ~BLACK_QUEEN_SIDE;
+        CASTLING_MASK[Bitboard.square(8, 5)] = ALL_CASTLING & ~(BLACK_KING_SIDE | BLACK_QUEEN_SIDE);
+        CASTLING_MASK[Bitboard.square(8, 8)] = ALL_CASTLING & ~BLACK_KING_SIDE;
+    }
+
     private ChessPiece[][] board = new ChessPiece[8][8];
     final public ArrayList<ChessMove> history = new ArrayList<>();
 
+    // Plies since the last capture or pawn move, for the fifty-move rule
+    private int halfmoveClock;
+
+    // Bitboard index of the squares above. It is not serialized, so it is built lazily from the
+    // squares the first time it is needed (e.g. after Gson restores a board).
+    private transient Bitboard bits;
+
+    // Castling rights and en passant target square (-1 if none). Like the bitboard these are not
+    // serialized; they are derived from the history when the bitboard is built and then kept up
+    // to date by every move.
+    private transient int castlingRights;
+    private transient int enPassant;
+
+    // Positions to restore on unmakeMove. Entries are reused so trying moves allocates nothing.
+    private transient Undo[] undoStack;
+    private transient int undoSize;
+
     public ChessBoard() {
         //resetBoard();
     }
@@ -21,6 +59,13 @@ public class ChessBoard {
         for (var i = 0; i < 8; i++) {
             System.arraycopy(copy.board[i], 0, this.board[i], 0, 8);
         }
+        if (copy.bits != null) {
+            this.bits = new Bitboard(copy.bits);
+            this.castlingRights = copy.castlingRights;
+            this.enPassant = copy.enPassant;
+        }
+        history.addAll(copy.history);
+        halfmoveClock = copy.halfmoveClock;
     }
 
     /**
@@ -30,7 +75,10 @@ public class ChessBoard {
      * @param piece    the piece to add
      */
     public void addPiece(ChessPosition position, ChessPiece piece) {
-        board[position.getRow() - 1][position.getColumn() - 1] = piece;
+        removePiece(position);
+        if (piece != null) {
+            putPiece(Bitboard.square(position), piece);
+        }
     }
 
     /**
@@ -69,6 +117,150 @@ public class ChessBoard {
             board[6][i] = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN);
             board[7][i] = new ChessPiece(ChessGame.TeamColor.BLACK, pieces[i]);
         }
+        halfmoveClock = 0;
+        bits = null;
+    }
+
+    /**
+     * Gets the bitboard index of the pieces on this board
+     *
+     * @return the bitboard index, kept in sync with every change to the board
+     */
+    public Bitboard getBitboard() {
+        if (bits == null) {
+            bits = new Bitboard(board);
+            castlingRights = ALL_CASTLING;
+            for (var move : history) {
+                castlingRights &= CASTLING_MASK[Bitboard.square(move.getStartPosition())]
+                        & CASTLING_MASK[Bitboard.square(move.getEndPosition())];
+            }
+            enPassant = -1;
+            if (!history.isEmpty()) {
+                var lastMove = getLastMove();
+                var pawn = getPiece(lastMove.getEndPosition());
+                if (pawn != null && pawn.getPieceType() == ChessPiece.PieceType.PAWN) {
+                    updateEnPassant(Bitboard.square(lastMove.getStartPosition()), Bitboard.square(lastMove.getEndPosition()), pawn);
+                }
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * @return the castling rights still available, as a combination of the
+     * {@code WHITE_KING_SIDE}, {@code WHITE_QUEEN_SIDE}, {@code BLACK_KING_SIDE}
+     * and {@code BLACK_QUEEN_SIDE} flags
+     */
+    public int getCastlingRights() {
+        getBitboard();
+        return castlingRights;
+    }
+
+    /**
+     * Sets the castling rights, e.g. when loading a position that did not come from a played game
+     *
+     * @param rights combination of the castling flags
+     */
+    public void setCastlingRights(int rights) {
+        getBitboard();
+        castlingRights = rights & ALL_CASTLING;
+    }
+
+    /**
+     * @param teamColor the team
+     * @param kingSide  true for king side (short) castling, false for queen side
+     * @return true if the team still has the right to castle to that side
+     */
+    public boolean canCastle(ChessGame.TeamColor teamColor, boolean kingSide) {
+        var right = kingSide ? WHITE_KING_SIDE : WHITE_QUEEN_SIDE;
+        if (teamColor == ChessGame.TeamColor.BLACK) {
+            right <<= 2;
+        }
+        return (getCastlingRights() & right) != 0;
+    }
+
+    /**
+     * Gets the square a pawn may capture en passant onto. It is only set right after a double pawn
+     * push that an enemy pawn is in place to capture.
+     *
+     * @return the en passant target square, or null if there is none
+     */
+    public ChessPosition getEnPassantSquare() {
+        getBitboard();
+        return enPassant < 0 ? null : Bitboard.position(enPassant);
+    }
+
+    /**
+     * Sets the en passant target square, e.g. when loading a position
+     *
+     * @param position the square skipped by the last double pawn push, or null for none
+     */
+    public void setEnPassantSquare(ChessPosition position) {
+        getBitboard();
+        enPassant = position == null ? -1 : Bitboard.square(position);
+    }
+
+    /**
+     * @return number of plies since the last capture or pawn move
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * Sets the halfmove clock, e.g. when loading a position
+     *
+     * @param plies number of plies since the last capture or pawn move
+     */
+    public void setHalfmoveClock(int plies) {
+        halfmoveClock = plies;
+    }
+
+    /**
+     * Checks whether neither team has enough material left to checkmate: only kings, plus at most
+     * one knight or bishop, or bishops that all stand on the same square color.
+     *
+     * @return true if the position is a dead draw by material
+     */
+    public boolean hasInsufficientMaterial() {
+        var bits = getBitboard();
+        var minors = Bitboard.EMPTY;
+        var bishops = Bitboard.EMPTY;
+        for (var color : ChessGame.TeamColor.values()) {
+            if ((bits.pieces(color, ChessPiece.PieceType.PAWN) | bits.pieces(color, ChessPiece.PieceType.ROOK)
+                    | bits.pieces(color, ChessPiece.PieceType.QUEEN)) != Bitboard.EMPTY) {
+                return false;
+            }
+            bishops |= bits.pieces(color, ChessPiece.PieceType.BISHOP);
+            minors |= bits.pieces(color, ChessPiece.PieceType.KNIGHT);
+        }
+        minors |= bishops;
+        if (Long.bitCount(minors) <= 1) {
+            return true;
+        }
+        return minors == bishops && ((bishops & Bitboard.LIGHT_SQUARES) == 0 || (bishops & ~Bitboard.LIGHT_SQUARES) == 0);
+    }
+
+    /**
+     * Gets the Zobrist key of this position: the pieces, castling rights and en passant square.
+     * It is updated incrementally as moves are made, so reading it is constant time.
+     *
+     * @return 64-bit position key
+     */
+    public long positionKey() {
+        var bits = getBitboard();
+        return bits.key() ^ Zobrist.castling(castlingRights) ^ Zobrist.enPassant(enPassant);
+    }
+
+    private void updateEnPassant(int from, int to, ChessPiece piece) {
+        enPassant = -1;
+        if (piece.getPieceType() == ChessPiece.PieceType.PAWN && Math.abs(to - from) == 16) {
+            var skipped = (from + to) / 2;
+            var enemyPawns = bits.pieces(piece.getTeamColor().opponent(), ChessPiece.PieceType.PAWN);
+            if ((Attacks.pawn(piece.getTeamColor(), skipped) & enemyPawns) != 0) {
+                enPassant = skipped;
+            }
+        }
     }
 
     /**
@@ -93,74 +285,190 @@ public class ChessBoard {
         }
 
         // Test if this move causes the king to be in check
-        var newBoard = new ChessBoard(this);
-        newBoard.movePiece(move);
-        var king = newBoard.getSquare(piece.getTeamColor(), ChessPiece.PieceType.KING);
-        return king == null || !king.isAttacked(newBoard);
+        makeMove(move);
+        var inCheck = isInCheck(piece.getTeamColor());
+        unmakeMove();
+        return !inCheck;
     }
 
     /**
-     * Moves a piece on the board
+     * Determines if the given team's king is attacked
+     *
+     * @param teamColor which team to check for check
+     * @return true if the team has a king and it is attacked
+     */
+    public boolean isInCheck(ChessGame.TeamColor teamColor) {
+        var bits = getBitboard();
+        var king = bits.pieces(teamColor, ChessPiece.PieceType.KING);
+        return king != Bitboard.EMPTY
+                && bits.attackersTo(Bitboard.first(king), teamColor.opponent(), bits.occupied()) != 0;
+    }
+
+    /**
+     * Moves a piece on the board and records the move in the game history
      *
      * @param move the move to make
      */
     public void movePiece(ChessMove move) {
-        var piece = getPiece(move.getStartPosition());
+        applyMove(move, null);
+        history.add(move);
+    }
+
+    /**
+     * Plays a packed move in place so that it can be taken back with {@link #unmakeMove()}
+     *
+     * @param move the move, as encoded by {@link PackedMove}
+     */
+    public void makeMove(int move) {
+        applyMove(PackedMove.from(move), PackedMove.to(move), PackedMove.promotion(move), pushUndo());
+    }
+
+    /**
+     * Plays a move in place so that it can be taken back with {@link #unmakeMove()}.
+     * Used to try out candidate moves; the move is not added to the game history.
+     *
+     * @param move the move to make
+     */
+    public void makeMove(ChessMove move) {
+        applyMove(move, pushUndo());
+    }
+
+    private Undo pushUndo() {
+        if (undoStack == null) {
+            undoStack = new Undo[16];
+        } else if (undoSize == undoStack.length) {
+            undoStack = Arrays.copyOf(undoStack, undoSize * 2);
+        }
+        if (undoStack[undoSize] == null) {
+            undoStack[undoSize] = new Undo();
+        }
+        return undoStack[undoSize++];
+    }
+
+    /**
+     * Takes back the most recent move played with {@link #makeMove(ChessMove)}
+     *
+     * @throws IllegalStateException if there is no such move to take back
+     */
+    public void unmakeMove() {
+        if (undoSize == 0) {
+            throw new IllegalStateException("No move to unmake");
+        }
+        var undo = undoStack[--undoSize];
+        takePiece(undo.to);
+        putPiece(undo.from, undo.moved);
+        if (undo.rookFrom >= 0) {
+            putPiece(undo.rookFrom, takePiece(undo.rookTo));
+        }
+        if (undo.captured != null) {
+            putPiece(undo.capturedSquare, undo.captured);
+        }
+        castlingRights = undo.castlingRights;
+        enPassant = undo.enPassant;
+        halfmoveClock = undo.halfmoveClock;
+    }
+
+    private void applyMove(ChessMove move, Undo undo) {
+        applyMove(Bitboard.square(move.getStartPosition()), Bitboard.square(move.getEndPosition()),
+                move.getPromotionPiece(), undo);
+    }
+
+    private void applyMove(int from, int to, ChessPiece.PieceType promotion, Undo undo) {
+        getBitboard();
+        var piece = pieceAt(from);
+        var capturedSquare = to;
+        var rookFrom = -1;
+        var rookTo = -1;
 
         // Handle promotion
-        if (move.getPromotionPiece() != null) {
-            piece = new ChessPiece(piece.getTeamColor(), move.getPromotionPiece());
+        var placed = piece;
+        if (promotion != null) {
+            placed = ChessPiece.of(piece.getTeamColor(), promotion);
         }
         // Handle castle
-        else if ((piece.getPieceType() == ChessPiece.PieceType.KING) &&
-                (Math.abs(move.getStartPosition().getColumn() - move.getEndPosition().getColumn()) == 2)) {
-            castle(move);
+        else if (piece.getPieceType() == ChessPiece.PieceType.KING && Math.abs(to - from) == 2) {
+            var kingSide = Bitboard.column(to) == 7;
+            rookFrom = to + (kingSide ? 1 : -2);
+            rookTo = to + (kingSide ? -1 : 1);
         }
         // Handle en passant
         else if ((piece.getPieceType() == ChessPiece.PieceType.PAWN) &&
-                (move.getStartPosition().getColumn() != move.getEndPosition().getColumn()) &&
-                (getPiece(move.getEndPosition()) == null)) {
-            enPassant(move);
+                (Bitboard.column(from) != Bitboard.column(to)) && (pieceAt(to) == null)) {
+            capturedSquare = Bitboard.square(Bitboard.row(from), Bitboard.column(to));
+        }
+
+        var captured = takePiece(capturedSquare);
+        takePiece(from);
+        putPiece(to, placed);
+        if (rookFrom >= 0) {
+            putPiece(rookTo, takePiece(rookFrom));
         }
 
-        removePiece(move.getStartPosition());
-        addPiece(move.getEndPosition(), piece);
+        if (undo != null) {
+            undo.castlingRights = castlingRights;
+            undo.enPassant = enPassant;
+            undo.halfmoveClock = halfmoveClock;
+            undo.from = from;
+            undo.to = to;
+            undo.moved = piece;
+            undo.captured = captured;
+            undo.capturedSquare = capturedSquare;
+            undo.rookFrom = rookFrom;
+            undo.rookTo = rookTo;
+        }
 
-        history.add(move);
+        castlingRights &= CASTLING_MASK[from] & CASTLING_MASK[to];
+        updateEnPassant(from, to, piece);
+        halfmoveClock = (captured != null || piece.getPieceType() == ChessPiece.PieceType.PAWN) ? 0 : halfmoveClock + 1;
     }
 
     /**
-     * En passant move
-     * @param move  The move to make
+     * Removes a piece from the board
      *
+     * @param position the position to remove the piece from
      */
-    public void enPassant(ChessMove move) {
-        var passantRow = move.getEndPosition().getRow() == 6 ? 5 : 4;
-        var passantPosition = new ChessPosition(passantRow, move.getEndPosition().getColumn());
+    private void removePiece(ChessPosition position) {
+        takePiece(Bitboard.square(position));
+    }
 
-        removePiece(passantPosition);
+    // Square-index primitives that keep the grid and the bitboard in step
+
+    private ChessPiece pieceAt(int square) {
+        return board[square >>> 3][square & 7];
     }
 
-    /**
-     * Castling move
-     * @param move The move to make
-     */
-    public void castle(ChessMove move) {
-        var row = move.getEndPosition().getRow();
-        var rookMove = new ChessMove(new ChessPosition(row, 1), new ChessPosition(row, 4), null);
-        if (move.getEndPosition().getColumn() == 7) {
-            rookMove = new ChessMove(new ChessPosition(row, 8), new ChessPosition(row, 6), null);
+    private ChessPiece takePiece(int square) {
+        var piece = board[square >>> 3][square & 7];
+        if (piece != null) {
+            board[square >>> 3][square & 7] = null;
+            if (bits != null) {
+                bits.remove(square, piece);
+            }
+        }
+        return piece;
+    }
+
+    private void putPiece(int square, ChessPiece piece) {
+        board[square >>> 3][square & 7] = piece;
+        if (bits != null) {
+            bits.add(square, piece);
         }
-        movePiece(rookMove);
     }
 
     /**
-     * Removes a piece from the board
-     *
-     * @param position the position to remove the piece from
+     * What {@link #unmakeMove()} needs to restore the position before a move
      */
-    private void removePiece(ChessPosition position) {
-        board[position.getRow() - 1][position.getColumn() - 1] = null;
+    private static class Undo {
+        int from;
+        int to;
+        ChessPiece moved;
+        ChessPiece captured;
+        int capturedSquare;
+        int rookFrom;
+        int rookTo;
+        int castlingRights;
+        int enPassant;
+        int halfmoveClock;
     }
 
     /**
@@ -171,36 +479,45 @@ public class ChessBoard {
      * @return the square with the specified piece type and team color
      */
     public ChessSquare getSquare(ChessGame.TeamColor teamColor, ChessPiece.PieceType pieceType) {
-        for (var square : chessSquareCollection()) {
-            if (square.getPiece().getTeamColor() == teamColor && square.getPiece().getPieceType() == pieceType) {
-                return square;
-            }
+        var mask = getBitboard().pieces(teamColor, pieceType);
+        if (mask == Bitboard.EMPTY) {
+            return null;
         }
-        return null;
+        var position = Bitboard.position(Bitboard.first(mask));
+        return new ChessSquare(getPiece(position), position);
     }
 
     /**
      * Checks if a piece is being attacked
      * @param position position of piece
      * @param teamColor color of team
-     * @return
+     * @return true if any piece of the other team attacks the position
      */
     public boolean isAttacked(ChessPosition position, ChessGame.TeamColor teamColor) {
-        return !getAttackingPieces(position, teamColor).isEmpty();
+        var bits = getBitboard();
+        return bits.attackersTo(Bitboard.square(position), teamColor.opponent(), bits.occupied()) != 0;
     }
 
     /** Gets the collection of ChessSquare on the board
      *  @return ChessSquare collection
      */
     public Collection<ChessSquare> chessSquareCollection() {
-        var squares = new ArrayList<ChessSquare>();
+        return chessSquareCollection(getBitboard().occupied());
+    }
 
-        for (var i = 0; i < 8; i++) {
-            for (var j = 0; j < 8; j++) {
-                if (board[i][j] != null) {
-                    squares.add(new ChessSquare(board[i][j], new ChessPosition(i + 1, j + 1)));
-                }
-            }
+    /** Gets the collection of ChessSquare for the given team
+     *  @param teamColor color of team
+     *  @return ChessSquare collection
+     */
+    public Collection<ChessSquare> chessSquareCollection(ChessGame.TeamColor teamColor) {
+        return chessSquareCollection(getBitboard().team(teamColor));
+    }
+
+    private Collection<ChessSquare> chessSquareCollection(long mask) {
+        var squares = new ArrayList<ChessSquare>(Long.bitCount(mask));
+        for (; mask != 0; mask &= mask - 1) {
+            var position = Bitboard.position(Bitboard.first(mask));
+            squares.add(new ChessSquare(getPiece(position), position));
         }
         return squares;
     }
@@ -213,16 +530,10 @@ public class ChessBoard {
     public Collection<ChessPosition> getAttackingPieces(ChessPosition position, ChessGame.TeamColor teamColor) {
         var attackingPieces = new ArrayList<ChessPosition>();
 
-        for (var probPiece : chessSquareCollection()) {
-            if (probPiece.getPiece().getTeamColor() != teamColor) {
-                var possibleMoves = probPiece.pieceMoves(this);
-                for (var move : possibleMoves) {
-                    if (move.getEndPosition().equals(position)) {
-                        attackingPieces.add(probPiece.getPosition());
-                        break;
-                    }
-                }
-            }
+        var bits = getBitboard();
+        var attackers = bits.attackersTo(Bitboard.square(position), teamColor.opponent(), bits.occupied());
+        for (; attackers != 0; attackers &= attackers - 1) {
+            attackingPieces.add(Bitboard.position(Bitboard.first(attackers)));
         }
         return attackingPieces;
     }
@@ -238,23 +549,13 @@ public class ChessBoard {
      * @return true if square is empty, false otherwise
      */
     public boolean isSquareEmpty(int row, int col) {
-        var pieceAt = getPiece(new ChessPosition(row, col));
-        return pieceAt == null;
+        return getBitboard().isEmpty(Bitboard.square(row, col));
     }
 
     public ChessMove getLastMove() {
         return history.get(history.size() - 1);
     }
 
-    public boolean isOriginalPosition(ChessPosition pos) {
-        for (var bh : getHistory()) {
-            if (bh.getStartPosition().equals(pos)) {
-                return false;
-            }
-        }
-        return true;
-    }
-
     /**
      * Checks if a move is castling
      * @param piece the piece to move
@@ -312,12 +613,12 @@ public class ChessBoard {
             return false;
         }
         ChessBoard board = (ChessBoard) o;
-        return Arrays.deepEquals(this.board, board.board);
+        return getBitboard().equals(board.getBitboard());
     }
 
     @Override
     public int hashCode() {
-        return 31 * Arrays.deepHashCode(board);
+        return 31 * getBitboard().hashCode();
     }
 
 
@@ -1,8 +1,10 @@
 package chess;
 
+import chess.moves.MoveGenerator;
 import com.google.gson.Gson;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Objects;
 
@@ -14,6 +16,9 @@ import java.util.Objects;
  */
 public class ChessGame {
 
+    // Move buffers for generateLegalMoves(MoveSink), one per nesting level on each thread
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
     private TeamColor teamTurn;
     private ChessBoard board;
 
@@ -44,7 +49,14 @@ public class ChessGame {
      */
     public enum TeamColor {
         WHITE,
-        BLACK
+        BLACK;
+
+        /**
+         * @return the other team
+         */
+        public TeamColor opponent() {
+            return this == WHITE ? BLACK : WHITE;
+        }
     }
 
     /**
@@ -60,19 +72,99 @@ public class ChessGame {
 
         // check if piece is not null
         if (piece != null) {
-            var possibleMoves = piece.pieceMoves(board, startPosition);
-
-            // filter out invalid moves and illegal moves
-            for (var move : possibleMoves) {
-                if (board.isLegalMove(move)) {
-                    validMoves.add(move);
+            var from = Bitboard.square(startPosition);
+            var scratch = SCRATCH.get();
+            var buffer = scratch.acquire();
+            try {
+                var count = MoveGenerator.legalMoves(board, piece.getTeamColor(), buffer);
+                for (var i = 0; i < count; i++) {
+                    if (PackedMove.from(buffer[i]) == from) {
+                        validMoves.add(PackedMove.toChessMove(buffer[i]));
+                    }
                 }
+            } finally {
+                scratch.release();
             }
         }
 
         return validMoves;
     }
 
+    /**
+     * Generates every legal move of the team whose turn it is
+     *
+     * @param buffer receives the moves as {@link PackedMove packed moves};
+     *               {@link MoveGenerator#MAX_MOVES} long is always enough
+     * @return number of moves written to the buffer
+     */
+    public int generateLegalMoves(int[] buffer) {
+        return MoveGenerator.legalMoves(board, teamTurn, buffer);
+    }
+
+    /**
+     * Generates every legal move of the team whose turn it is. The moves are generated into a
+     * reused per-thread buffer before the sink sees any of them, so the sink may change the board
+     * (e.g. make and unmake a move, or generate moves recursively) while it runs.
+     *
+     * @param sink receives each move as a {@link PackedMove packed move}
+     */
+    public void generateLegalMoves(MoveSink sink) {
+        var scratch = SCRATCH.get();
+        var buffer = scratch.acquire();
+        try {
+            var count = generateLegalMoves(buffer);
+            for (var i = 0; i < count; i++) {
+                sink.accept(buffer[i]);
+            }
+        } finally {
+            scratch.release();
+        }
+    }
+
+    /**
+     * Checks whether a move is legal for the team whose turn it is
+     *
+     * @param move the move
+     * @return true if the move may be made
+     */
+    public boolean isLegalMove(ChessMove move) {
+        var piece = board.getPiece(move.getStartPosition());
+        if (piece == null || piece.getTeamColor() != teamTurn || !isPromotable(move.getPromotionPiece())) {
+            return false;
+        }
+
+        var packed = PackedMove.fromChessMove(board, move);
+        var scratch = SCRATCH.get();
+        var buffer = scratch.acquire();
+        try {
+            var count = generateLegalMoves(buffer);
+            for (var i = 0; i < count; i++) {
+                if (buffer[i] == packed) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            scratch.release();
+        }
+    }
+
+    private static boolean isPromotable(ChessPiece.PieceType type) {
+        return type != ChessPiece.PieceType.KING && type != ChessPiece.PieceType.PAWN;
+    }
+
+    /**
+     * Plays a packed move for the team whose turn it is, without checking that it is legal.
+     * Meant for moves that came from {@link #generateLegalMoves}; it is recorded in the history
+     * like any other move.
+     *
+     * @param move the move, as encoded by {@link PackedMove}
+     */
+    public void makeMove(int move) {
+        board.movePiece(PackedMove.toChessMove(move));
+        teamTurn = teamTurn.opponent();
+    }
+
     /**
      * Makes a move in a chess game
      *
@@ -80,20 +172,10 @@ public class ChessGame {
      * @throws InvalidMoveException if move is invalid
      */
     public void makeMove(ChessMove move) throws InvalidMoveException {
-        var piece = board.getPiece(move.getStartPosition());
-        // check if piece is not null
-        if (piece != null) {
-            // che if is my turn
-            if (piece.getTeamColor() == teamTurn) {
-                var validMoves = piece.pieceMoves(board, move.getStartPosition());
-                if (validMoves.contains(move)) {
-                    if (board.isLegalMove(move)) {
-                        board.movePiece(move);
-                        teamTurn = teamTurn == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
-                        return;
-                    }
-                }
-            }
+        if (isLegalMove(move)) {
+            board.movePiece(move);
+            teamTurn = teamTurn.opponent();
+            return;
         }
         throw new InvalidMoveException(String.format("Invalid move: %s", move));
     }
@@ -105,12 +187,7 @@ public class ChessGame {
      * @return True if the specified team is in check
      */
     public boolean isInCheck(TeamColor teamColor) {
-        var kingSquare = board.getSquare(teamColor, ChessPiece.PieceType.KING);
-        if (kingSquare == null) {
-            return false;
-        }
-
-        return kingSquare.isAttacked(board);
+        return board.isInCheck(teamColor);
     }
 
     /**
@@ -120,29 +197,7 @@ public class ChessGame {
      * @return True if the specified team is in checkmate
      */
     public boolean isInCheckmate(TeamColor teamColor) {
-        var kingSquare = board.getSquare(teamColor, ChessPiece.PieceType.KING);
-        if (kingSquare == null) {
-            return false;
-        }
-        if (!kingSquare.isAttacked(board)) {
-            return false;
-        }
-
-        // Check for valid moves for all pieces
-        for (var square : board.chessSquareCollection()) {
-            if (square.getPiece().getTeamColor() == teamColor) {
-                for (var move : square.pieceMoves(board)) {
-                    var newBoard = new ChessBoard(board);
-                    newBoard.movePiece(move);
-                    var newKingSquare = newBoard.getSquare(teamColor, ChessPiece.PieceType.KING);
-
-                    if (!newKingSquare.isAttacked(newBoard)) {
-                        return false;
-                    }
-                }
-            }
-        }
-        return true;
+        return board.isInCheck(teamColor) && !hasLegalMove(teamColor);
     }
 
     /**
@@ -153,24 +208,39 @@ public class ChessGame {
      * @return True if the specified team is in stalemate, otherwise false
      */
     public boolean isInStalemate(TeamColor teamColor) {
-        var kingSquare = board.getSquare(teamColor, ChessPiece.PieceType.KING);
-        if (kingSquare == null) {
+        if (board.getBitboard().pieces(teamColor, ChessPiece.PieceType.KING) == Bitboard.EMPTY) {
             return false;
         }
-        if (kingSquare.isAttacked(board)) {
-            return false;
+        return !board.isInCheck(teamColor) && !hasLegalMove(teamColor);
+    }
+
+    /**
+     * Evaluates the game for the team to move in a single pass: whether it is in check, and whether
+     * the game has ended by checkmate, stalemate, insufficient material or the fifty-move rule.
+     * Legal moves are only searched until the first one is found.
+     *
+     * @return the status of the game
+     */
+    public GameStatus evaluateStatus() {
+        var check = board.isInCheck(teamTurn);
+        var outcome = GameStatus.Outcome.IN_PROGRESS;
+        if (!hasLegalMove(teamTurn)) {
+            outcome = check ? GameStatus.Outcome.CHECKMATE : GameStatus.Outcome.STALEMATE;
+        } else if (board.hasInsufficientMaterial()) {
+            outcome = GameStatus.Outcome.INSUFFICIENT_MATERIAL;
+        } else if (board.getHalfmoveClock() >= 100) {
+            outcome = GameStatus.Outcome.FIFTY_MOVE_RULE;
         }
+        return new GameStatus(teamTurn, check, outcome);
+    }
 
-        // Check for valid moves for all pieces
-        for (var squares : board.chessSquareCollection()) {
-            if (squares.getPiece().getTeamColor() == teamColor) {
-                var validMoves = validMoves(squares.getPosition());
-                if (!validMoves.isEmpty()) {
-                    return false;
-                }
-            }
+    private boolean hasLegalMove(TeamColor teamColor) {
+        var scratch = SCRATCH.get();
+        try {
+            return MoveGenerator.hasLegalMove(board, teamColor, scratch.acquire());
+        } finally {
+            scratch.release();
         }
-        return true;
     }
 
     /**
@@ -191,6 +261,39 @@ public class ChessGame {
         return board;
     }
 
+    /**
+     * Gets the Zobrist key of the current position, including the team to move. Positions that
+     * can be reached from each other by transposition share a key, which makes it usable for
+     * repetition detection and as a cache key.
+     *
+     * @return 64-bit position key
+     */
+    public long positionKey() {
+        return board.positionKey() ^ Zobrist.side(teamTurn);
+    }
+
+    /**
+     * Stack of move buffers, so that move generation can nest on one thread without allocating
+     */
+    private static class Scratch {
+        private int[][] buffers = new int[8][];
+        private int depth;
+
+        int[] acquire() {
+            if (depth == buffers.length) {
+                buffers = Arrays.copyOf(buffers, depth * 2);
+            }
+            if (buffers[depth] == null) {
+                buffers[depth] = new int[MoveGenerator.MAX_MOVES];
+            }
+            return buffers[depth++];
+        }
+
+        void release() {
+            depth--;
+        }
+    }
+
     public static ChessGame createGame(String serializedGame) {
         return new Gson().fromJson(serializedGame, ChessGame.class);
     }
@@ -14,6 +14,16 @@ import chess.moves.Moves;
  */
 public class ChessPiece {
 
+    private static final ChessPiece[][] PIECES = new ChessPiece[2][6];
+
+    static {
+        for (var color : ChessGame.TeamColor.values()) {
+            for (var type : PieceType.values()) {
+                PIECES[color.ordinal()][type.ordinal()] = new ChessPiece(color, type);
+            }
+        }
+    }
+
     private final ChessGame.TeamColor pieceColor;
     private final PieceType type;
 
@@ -22,6 +32,16 @@ public class ChessPiece {
         this.type = type;
     }
 
+    /**
+     * Gets a shared instance of a piece. Pieces are immutable, so the board can reuse these
+     * instead of allocating a new piece for every promotion.
+     *
+     * @return the piece of the given team and type
+     */
+    public static ChessPiece of(ChessGame.TeamColor pieceColor, ChessPiece.PieceType type) {
+        return PIECES[pieceColor.ordinal()][type.ordinal()];
+    }
+
     /**
      * The various different chess piece options
      */
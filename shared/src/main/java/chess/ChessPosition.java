@@ -1,7 +1,6 @@
 package chess;
 
 import java.util.Locale;
-import java.util.Objects;
 
 /**
  * Represents a single square position on a chess board
@@ -59,7 +58,7 @@ public class ChessPosition {
 
     @Override
     public int hashCode() {
-        return Objects.hash(getRow(), col);
+        return 31 * row + col;
     }
 
     @Override
@@ -0,0 +1,158 @@
+package chess;
+
+import java.util.Map;
+
+/**
+ * Reads and writes positions in Forsyth-Edwards Notation, e.g. the starting position
+ * {@code rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1}.
+ */
+public class Fen {
+    public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private static final Map<Character, ChessPiece.PieceType> CHAR_TO_TYPE = Map.of(
+            'p', ChessPiece.PieceType.PAWN,
+            'n', ChessPiece.PieceType.KNIGHT,
+            'b', ChessPiece.PieceType.BISHOP,
+            'r', ChessPiece.PieceType.ROOK,
+            'q', ChessPiece.PieceType.QUEEN,
+            'k', ChessPiece.PieceType.KING);
+
+    private static final Map<ChessPiece.PieceType, Character> TYPE_TO_CHAR = Map.of(
+            ChessPiece.PieceType.PAWN, 'p',
+            ChessPiece.PieceType.KNIGHT, 'n',
+            ChessPiece.PieceType.BISHOP, 'b',
+            ChessPiece.PieceType.ROOK, 'r',
+            ChessPiece.PieceType.QUEEN, 'q',
+            ChessPiece.PieceType.KING, 'k');
+
+    private static final String CASTLING = "KQkq";
+
+    /**
+     * Creates a game from a FEN string. The move counters are optional; the fullmove number is ignored.
+     *
+     * @param fen the position
+     * @return a game set up in that position
+     * @throws IllegalArgumentException if the string is not valid FEN
+     */
+    public static ChessGame parse(String fen) {
+        var fields = fen.trim().split("\\s+");
+        if (fields.length < 4) {
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+
+        var board = new ChessBoard();
+        var row = 8;
+        var column = 1;
+        // Every rank must cover exactly eight files, so column ends each one at 9
+        for (var c : fields[0].toCharArray()) {
+            if (c == '/') {
+                if (column != 9) {
+                    throw new IllegalArgumentException("Invalid FEN: " + fen);
+                }
+                row--;
+                column = 1;
+            } else if (c >= '1' && c <= '8') {
+                column += c - '0';
+                if (column > 9) {
+                    throw new IllegalArgumentException("Invalid FEN: " + fen);
+                }
+            } else {
+                var type = CHAR_TO_TYPE.get(Character.toLowerCase(c));
+                if (type == null || row < 1 || column > 8) {
+                    throw new IllegalArgumentException("Invalid FEN: " + fen);
+                }
+                var color = Character.isUpperCase(c) ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+                board.addPiece(new ChessPosition(row, column++), ChessPiece.of(color, type));
+            }
+        }
+
+        if (row != 1 || column != 9) {
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+
+        var rights = 0;
+        for (var c : fields[2].toCharArray()) {
+            var flag = CASTLING.indexOf(c);
+            if (flag >= 0) {
+                rights |= 1 << flag;
+            }
+        }
+        board.setCastlingRights(rights);
+        if (!fields[3].equals("-")) {
+            board.setEnPassantSquare(Bitboard.position(square(fields[3])));
+        }
+        if (fields.length > 4) {
+            board.setHalfmoveClock(Integer.parseInt(fields[4]));
+        }
+
+        var game = new ChessGame();
+        game.setBoard(board);
+        game.setTeamTurn(fields[1].equals("b") ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE);
+        return game;
+    }
+
+    /**
+     * Writes a game's current position as FEN
+     *
+     * @param game the game
+     * @return the FEN string
+     */
+    public static String format(ChessGame game) {
+        var board = game.getBoard();
+        var sb = new StringBuilder();
+        for (var row = 8; row >= 1; row--) {
+            var empty = 0;
+            for (var column = 1; column <= 8; column++) {
+                var piece = board.getPiece(Bitboard.position(Bitboard.square(row, column)));
+                if (piece == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    sb.append(empty);
+                    empty = 0;
+                }
+                char c = TYPE_TO_CHAR.get(piece.getPieceType());
+                sb.append(piece.getTeamColor() == ChessGame.TeamColor.WHITE ? Character.toUpperCase(c) : c);
+            }
+            if (empty > 0) {
+                sb.append(empty);
+            }
+            if (row > 1) {
+                sb.append('/');
+            }
+        }
+
+        sb.append(game.getTeamTurn() == ChessGame.TeamColor.WHITE ? " w " : " b ");
+        var rights = board.getCastlingRights();
+        for (var flag = 0; flag < CASTLING.length(); flag++) {
+            if ((rights & (1 << flag)) != 0) {
+                sb.append(CASTLING.charAt(flag));
+            }
+        }
+        if (rights == 0) {
+            sb.append('-');
+        }
+
+        var passant = board.getEnPassantSquare();
+        sb.append(' ').append(passant == null ? "-" : name(Bitboard.square(passant)));
+        sb.append(' ').append(board.getHalfmoveClock()).append(" 1");
+        return sb.toString();
+    }
+
+    private static int square(String name) {
+        if (name.length() != 2) {
+            throw new IllegalArgumentException("Invalid square: " + name);
+        }
+        var column = name.charAt(0) - 'a' + 1;
+        var row = name.charAt(1) - '0';
+        if (column < 1 || column > 8 || row < 1 || row > 8) {
+            throw new IllegalArgumentException("Invalid square: " + name);
+        }
+        return Bitboard.square(row, column);
+    }
+
+    private static String name(int square) {
+        return "" + (char) ('a' + Bitboard.column(square) - 1) + Bitboard.row(square);
+    }
+}
@@ -0,0 +1,123 @@
+package chess;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary form of a {@link ChessGame}, used to store games instead of Gson JSON:
+ * <pre>
+ *   1 byte    format version ({@link #VERSION}); never '{', so JSON can be told apart
+ *   1 byte    team to move (bit 0, set for black) and castling rights (bits 1-4)
+ *   1 byte    en passant square, or 0xFF for none
+ *   2 bytes   halfmove clock
+ *   32 bytes  the 64 squares from a1 to h8, a nibble each: 0 for empty, otherwise
+ *             piece type ordinal + 1, plus 8 for black pieces
+ *   2 bytes   number of moves in the history
+ *   2 bytes   per move, packed as by {@link PackedMove} (flags only record promotions)
+ * </pre>
+ * A game in progress encodes to a few hundred bytes at most, against kilobytes of JSON.
+ */
+public class GameCodec {
+    public static final byte VERSION = 1;
+
+    private static final int HEADER_SIZE = 1 + 1 + 1 + 2 + 32 + 2;
+    private static final int NO_SQUARE = 0xFF;
+
+    /**
+     * @return the game in binary form
+     */
+    public static byte[] encode(ChessGame game) {
+        var board = game.getBoard();
+        var history = board.getHistory();
+        var buffer = ByteBuffer.allocate(HEADER_SIZE + 2 * history.size());
+
+        buffer.put(VERSION);
+        var side = game.getTeamTurn() == ChessGame.TeamColor.BLACK ? 1 : 0;
+        buffer.put((byte) (side | (board.getCastlingRights() << 1)));
+        var passant = board.getEnPassantSquare();
+        buffer.put((byte) (passant == null ? NO_SQUARE : Bitboard.square(passant)));
+        buffer.putShort((short) board.getHalfmoveClock());
+
+        for (var square = 0; square < 64; square += 2) {
+            buffer.put((byte) (nibble(board, square) | (nibble(board, square + 1) << 4)));
+        }
+
+        buffer.putShort((short) history.size());
+        for (var move : history) {
+            buffer.putShort((short) PackedMove.of(move));
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Reads a game written by {@link #encode}. For rows stored before the binary format, JSON
+     * (anything starting with '{') is parsed with {@link ChessGame#createGame}.
+     *
+     * @param data the encoded game
+     * @return the game
+     * @throws IllegalArgumentException if the data is truncated, corrupt or of an unknown version
+     */
+    public static ChessGame decode(byte[] data) {
+        if (data.length > 0 && data[0] == '{') {
+            return ChessGame.createGame(new String(data, StandardCharsets.UTF_8));
+        }
+        if (data.length == 0 || data[0] != VERSION) {
+            throw new IllegalArgumentException("Unknown game format");
+        }
+
+        try {
+            var buffer = ByteBuffer.wrap(data, 1, data.length - 1);
+            var flags = buffer.get();
+            var passant = buffer.get() & 0xFF;
+            if (passant != NO_SQUARE && passant >= 64) {
+                throw new IllegalArgumentException("Invalid en passant square: " + passant);
+            }
+            var halfmoveClock = buffer.getShort() & 0xFFFF;
+
+            var board = new ChessBoard();
+            for (var square = 0; square < 64; square += 2) {
+                var pair = buffer.get();
+                addPiece(board, square, pair & 0xF);
+                addPiece(board, square + 1, (pair >>> 4) & 0xF);
+            }
+
+            var moves = buffer.getShort() & 0xFFFF;
+            for (var i = 0; i < moves; i++) {
+                board.history.add(PackedMove.toChessMove(buffer.getShort() & 0xFFFF));
+            }
+            board.setCastlingRights(flags >>> 1);
+            board.setEnPassantSquare(passant == NO_SQUARE ? null : Bitboard.position(passant));
+            board.setHalfmoveClock(halfmoveClock);
+
+            var game = new ChessGame();
+            game.setBoard(board);
+            game.setTeamTurn((flags & 1) != 0 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE);
+            return game;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated game data", e);
+        }
+    }
+
+    private static int nibble(ChessBoard board, int square) {
+        var piece = board.getPiece(Bitboard.position(square));
+        if (piece == null) {
+            return 0;
+        }
+        return (piece.getPieceType().ordinal() + 1) | (piece.getTeamColor() == ChessGame.TeamColor.BLACK ? 8 : 0);
+    }
+
+    private static void addPiece(ChessBoard board, int square, int nibble) {
+        if (nibble != 0) {
+            var types = ChessPiece.PieceType.values();
+            var index = (nibble & 7) - 1;
+            if (index < 0 || index >= types.length) {
+                throw new IllegalArgumentException("Invalid piece: " + nibble);
+            }
+            var color = (nibble & 8) != 0 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+            var type = types[index];
+            board.addPiece(Bitboard.position(square), ChessPiece.of(color, type));
+        }
+    }
+}
+
@@ -0,0 +1,33 @@
+package chess;
+
+/**
+ * Status of a game for the team to move, as computed by {@link ChessGame#evaluateStatus()}
+ *
+ * @param turn    the team to move
+ * @param check   true if the team to move is in check
+ * @param outcome how the game stands
+ */
+public record GameStatus(ChessGame.TeamColor turn, boolean check, Outcome outcome) {
+    public enum Outcome {
+        IN_PROGRESS,
+        CHECKMATE,
+        STALEMATE,
+        INSUFFICIENT_MATERIAL,
+        FIFTY_MOVE_RULE
+    }
+
+    public boolean isGameOver() {
+        return outcome != Outcome.IN_PROGRESS;
+    }
+
+    public boolean isDraw() {
+        return isGameOver() && outcome != Outcome.CHECKMATE;
+    }
+
+    /**
+     * @return the winning team, or null if the game is not won
+     */
+    public ChessGame.TeamColor winner() {
+        return outcome == Outcome.CHECKMATE ? turn.opponent() : null;
+    }
+}
@@ -0,0 +1,92 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Growable list of {@link PackedMove packed moves} backed by an int array. Clearing keeps the
+ * array, so a list reused across positions stops allocating once it has grown to size.
+ */
+public class MoveList implements MoveSink {
+    private int[] moves;
+    private int size;
+
+    public MoveList() {
+        this(256);
+    }
+
+    /**
+     * @param capacity the number of moves the list holds before it first grows
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    public MoveList(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Negative capacity: " + capacity);
+        }
+        moves = new int[capacity];
+    }
+
+    public void add(int move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, Math.max(8, size * 2));
+        }
+        moves[size++] = move;
+    }
+
+    @Override
+    public void accept(int move) {
+        add(move);
+    }
+
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return moves[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public boolean contains(int move) {
+        for (var i = 0; i < size; i++) {
+            if (moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the moves unpacked into {@link ChessMove} objects
+     */
+    public List<ChessMove> toChessMoves() {
+        var result = new ArrayList<ChessMove>(size);
+        for (var i = 0; i < size; i++) {
+            result.add(PackedMove.toChessMove(moves[i]));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        var sb = new StringBuilder("[");
+        for (var i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(PackedMove.toString(moves[i]));
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,9 @@
+package chess;
+
+/**
+ * Receives moves from a move generator, one {@link PackedMove packed move} at a time
+ */
+@FunctionalInterface
+public interface MoveSink {
+    void accept(int move);
+}
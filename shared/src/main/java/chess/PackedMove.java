@@ -0,0 +1,165 @@
+package chess;
+
+/**
+ * Moves packed into the low 16 bits of an int, so move lists can be kept in primitive arrays:
+ * <pre>
+ *   bits  0-5   from square (0 = a1 ... 63 = h8, see {@link Bitboard})
+ *   bits  6-11  to square
+ *   bits 12-15  flags
+ * </pre>
+ * The flags follow the usual layout: bit 3 marks a promotion, bit 2 a capture, and the low two
+ * bits select the promotion piece or the kind of special move.
+ */
+public final class PackedMove {
+    public static final int NONE = 0;
+
+    public static final int QUIET = 0;
+    public static final int DOUBLE_PAWN_PUSH = 1;
+    public static final int KING_CASTLE = 2;
+    public static final int QUEEN_CASTLE = 3;
+    public static final int CAPTURE = 4;
+    public static final int EN_PASSANT = 5;
+    public static final int PROMOTION = 8;
+    public static final int PROMOTION_CAPTURE = PROMOTION | CAPTURE;
+
+    private static final ChessPiece.PieceType[] PROMOTIONS = {
+            ChessPiece.PieceType.KNIGHT,
+            ChessPiece.PieceType.BISHOP,
+            ChessPiece.PieceType.ROOK,
+            ChessPiece.PieceType.QUEEN
+    };
+
+    private PackedMove() {
+    }
+
+    public static int of(int from, int to, int flags) {
+        return from | (to << 6) | (flags << 12);
+    }
+
+    /**
+     * Packs a promotion
+     *
+     * @param capture   true if the pawn captures as it promotes
+     * @param promotion the piece to promote to: knight, bishop, rook or queen
+     */
+    public static int promotion(int from, int to, boolean capture, ChessPiece.PieceType promotion) {
+        return of(from, to, (capture ? PROMOTION_CAPTURE : PROMOTION) | promotionCode(promotion));
+    }
+
+    public static int from(int move) {
+        return move & 0x3F;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    public static int flags(int move) {
+        return (move >>> 12) & 0xF;
+    }
+
+    public static boolean isCapture(int move) {
+        return (flags(move) & CAPTURE) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (flags(move) & PROMOTION) != 0;
+    }
+
+    public static boolean isCastle(int move) {
+        var flags = flags(move);
+        return flags == KING_CASTLE || flags == QUEEN_CASTLE;
+    }
+
+    /**
+     * @return the piece a pawn promotes to, or null if the move is not a promotion
+     */
+    public static ChessPiece.PieceType promotion(int move) {
+        return isPromotion(move) ? PROMOTIONS[flags(move) & 3] : null;
+    }
+
+    /**
+     * Unpacks a move. The positions are the shared instances from {@link Bitboard#position(int)}.
+     */
+    public static ChessMove toChessMove(int move) {
+        return new ChessMove(Bitboard.position(from(move)), Bitboard.position(to(move)), promotion(move));
+    }
+
+    /**
+     * Packs a move's squares and promotion piece. The other flags depend on the board, so they
+     * are left clear; use {@link #fromChessMove} when they are needed.
+     */
+    public static int of(ChessMove move) {
+        var from = Bitboard.square(move.getStartPosition());
+        var to = Bitboard.square(move.getEndPosition());
+        if (move.getPromotionPiece() != null) {
+            return promotion(from, to, false, move.getPromotionPiece());
+        }
+        return of(from, to, QUIET);
+    }
+
+    /**
+     * Packs a move, working out its flags from the board it is about to be played on
+     *
+     * @param board the board before the move
+     * @param move  the move
+     * @return the packed move
+     * @throws IllegalArgumentException if there is no piece on the move's start square
+     */
+    public static int fromChessMove(ChessBoard board, ChessMove move) {
+        var from = Bitboard.square(move.getStartPosition());
+        var to = Bitboard.square(move.getEndPosition());
+        var piece = board.getPiece(move.getStartPosition());
+        if (piece == null) {
+            throw new IllegalArgumentException("No piece to move: " + move);
+        }
+
+        var capture = !board.getBitboard().isEmpty(to);
+        if (move.getPromotionPiece() != null) {
+            return promotion(from, to, capture, move.getPromotionPiece());
+        }
+        if (capture) {
+            return of(from, to, CAPTURE);
+        }
+        if (piece.getPieceType() == ChessPiece.PieceType.KING && Math.abs(to - from) == 2) {
+            return of(from, to, to > from ? KING_CASTLE : QUEEN_CASTLE);
+        }
+        if (piece.getPieceType() == ChessPiece.PieceType.PAWN) {
+            if (Math.abs(to - from) == 16) {
+                return of(from, to, DOUBLE_PAWN_PUSH);
+            }
+            if (Bitboard.column(from) != Bitboard.column(to)) {
+                return of(from, to, EN_PASSANT);
+            }
+        }
+        return of(from, to, QUIET);
+    }
+
+    /**
+     * @return the move in coordinate notation, e.g. e2e4 or e7e8q
+     */
+    public static String toString(int move) {
+        var sb = new StringBuilder(5);
+        appendSquare(sb, from(move));
+        appendSquare(sb, to(move));
+        var promotion = promotion(move);
+        if (promotion != null) {
+            sb.append("nbrq".charAt(promotionCode(promotion)));
+        }
+        return sb.toString();
+    }
+
+    private static void appendSquare(StringBuilder sb, int square) {
+        sb.append((char) ('a' + Bitboard.column(square) - 1)).append(Bitboard.row(square));
+    }
+
+    private static int promotionCode(ChessPiece.PieceType type) {
+        return switch (type) {
+            case KNIGHT -> 0;
+            case BISHOP -> 1;
+            case ROOK -> 2;
+            case QUEEN -> 3;
+            default -> throw new IllegalArgumentException("Cannot promote to " + type);
+        };
+    }
+}
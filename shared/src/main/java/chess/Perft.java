@@ -0,0 +1,215 @@
+package chess;
+
+import chess.moves.MoveGenerator;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+
+/**
+ * Perft (performance test) driver: counts the leaf nodes of the legal move tree to a fixed depth,
+ * using {@link ChessGame#generateLegalMoves(int[])} and in-place make/unmake.
+ * The counts for the reference positions are well known, so any difference points at a move
+ * generation bug, and the time taken measures move generation throughput.
+ * <p>
+ * Run from the command line as {@code Perft [depth] [position|fen] [--divide] [--threads n]}, where
+ * position is one of the names in {@link #POSITIONS}. Without a position every reference position
+ * is run and checked against its expected counts.
+ */
+public class Perft {
+
+    /**
+     * A reference position and its known node counts, starting at depth 1
+     */
+    public record Position(String name, String fen, long... nodes) {
+    }
+
+    public static final List<Position> POSITIONS = List.of(
+            new Position("start", Fen.START,
+                    20, 400, 8_902, 197_281, 4_865_609, 119_060_324),
+            new Position("kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                    48, 2_039, 97_862, 4_085_603, 193_690_690),
+            new Position("position3", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                    14, 191, 2_812, 43_238, 674_624, 11_030_083),
+            new Position("position4", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                    6, 264, 9_467, 422_333, 15_833_292),
+            new Position("position5", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                    44, 1_486, 62_379, 2_103_487, 89_941_194),
+            new Position("position6", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+                    46, 2_079, 89_890, 3_894_594, 164_075_551));
+
+    /**
+     * Counts the leaf nodes of the legal move tree. The game is searched in place and is back in
+     * its original position when this returns.
+     *
+     * @param game  the position to search from
+     * @param depth number of plies to search
+     * @return number of leaf nodes
+     */
+    public static long perft(ChessGame game, int depth) {
+        return perft(game, depth, new int[Math.max(depth, 1)][MoveGenerator.MAX_MOVES]);
+    }
+
+    private static long perft(ChessGame game, int depth, int[][] buffers) {
+        if (depth == 0) {
+            return 1;
+        }
+
+        var moves = buffers[depth - 1];
+        var count = game.generateLegalMoves(moves);
+        if (depth == 1) {
+            return count;
+        }
+        var nodes = 0L;
+        for (var i = 0; i < count; i++) {
+            game.getBoard().makeMove(moves[i]);
+            game.setTeamTurn(game.getTeamTurn().opponent());
+            nodes += perft(game, depth - 1, buffers);
+            undo(game);
+        }
+        return nodes;
+    }
+
+    /**
+     * Counts the leaf nodes below each legal move of the root position
+     *
+     * @param game  the position to search from
+     * @param depth number of plies to search, including the root move
+     * @return node count per root move, in generation order
+     */
+    public static Map<ChessMove, Long> divide(ChessGame game, int depth) {
+        var result = new LinkedHashMap<ChessMove, Long>();
+        for (var move : legalMoves(game)) {
+            play(game, move);
+            result.put(move, perft(game, depth - 1));
+            undo(game);
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link #divide(ChessGame, int)}, but the root moves are split across threads, each
+     * searching its own copy of the game.
+     *
+     * @param game    the position to search from; it is not modified
+     * @param depth   number of plies to search, including the root move
+     * @param threads number of worker threads
+     * @return node count per root move, in generation order
+     */
+    public static Map<ChessMove, Long> divide(ChessGame game, int depth, int threads) {
+        var tasks = new ArrayList<Callable<Long>>();
+        var moves = legalMoves(game);
+        for (var move : moves) {
+            tasks.add(() -> {
+                var copy = copy(game);
+                play(copy, move);
+                return perft(copy, depth - 1);
+            });
+        }
+
+        var result = new LinkedHashMap<ChessMove, Long>();
+        try (var executor = Executors.newFixedThreadPool(threads)) {
+            var futures = executor.invokeAll(tasks);
+            for (var i = 0; i < moves.size(); i++) {
+                result.put(moves.get(i), futures.get(i).get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Perft interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Perft failed", e.getCause());
+        }
+        return result;
+    }
+
+    /**
+     * @return every legal move for the team to move
+     */
+    public static List<ChessMove> legalMoves(ChessGame game) {
+        var moves = new MoveList();
+        game.generateLegalMoves(moves);
+        return moves.toChessMoves();
+    }
+
+    private static void play(ChessGame game, ChessMove move) {
+        game.getBoard().makeMove(move);
+        game.setTeamTurn(game.getTeamTurn().opponent());
+    }
+
+    private static void undo(ChessGame game) {
+        game.getBoard().unmakeMove();
+        game.setTeamTurn(game.getTeamTurn().opponent());
+    }
+
+    private static ChessGame copy(ChessGame game) {
+        var copy = new ChessGame();
+        copy.setBoard(game.getBoard());
+        copy.setTeamTurn(game.getTeamTurn());
+        return copy;
+    }
+
+    public static void main(String[] args) {
+        var depth = 4;
+        String target = null;
+        var divide = false;
+        var threads = 1;
+        for (var i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--divide" -> divide = true;
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                default -> {
+                    if (args[i].matches("\\d+")) {
+                        depth = Integer.parseInt(args[i]);
+                    } else {
+                        target = args[i];
+                    }
+                }
+            }
+        }
+
+        var positions = POSITIONS;
+        if (target != null) {
+            var name = target;
+            positions = POSITIONS.stream().filter(p -> p.name().equals(name)).toList();
+            if (positions.isEmpty()) {
+                positions = List.of(new Position("fen", target));
+            }
+        }
+
+        var failed = false;
+        for (var position : positions) {
+            failed |= !run(position, depth, divide, threads);
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean run(Position position, int depth, boolean divide, int threads) {
+        var game = Fen.parse(position.fen());
+        var start = System.nanoTime();
+        var counts = threads > 1 ? divide(game, depth, threads) : divide(game, depth);
+        var elapsed = System.nanoTime() - start;
+
+        if (divide) {
+            counts.forEach((move, nodes) -> System.out.printf("%s: %d%n", move, nodes));
+        }
+        var nodes = counts.values().stream().mapToLong(Long::longValue).sum();
+        var seconds = elapsed / 1e9;
+        System.out.printf("%-10s depth %d  nodes %,d  time %.3fs  %,.0f nodes/s", position.name(), depth, nodes,
+                seconds, nodes / Math.max(seconds, 1e-9));
+
+        if (depth > position.nodes().length) {
+            System.out.println();
+            return true;
+        }
+        var expected = position.nodes()[depth - 1];
+        var ok = nodes == expected;
+        System.out.println(ok ? "  ok" : String.format("  FAILED (expected %,d)", expected));
+        return ok;
+    }
+}
@@ -0,0 +1,67 @@
+package chess;
+
+/**
+ * Random keys for Zobrist hashing of chess positions.
+ * <p>
+ * A position's key is the XOR of one key per (piece, square) pair, one for the castling rights,
+ * one for the en passant file and one for the side to move, so a move can update it by XOR-ing
+ * out what changed instead of rehashing the board. The keys come from a fixed-seed generator and
+ * are identical in every JVM, so keys can be compared across the client and server.
+ */
+public class Zobrist {
+    private static final long[] PIECES = new long[12 * 64];
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EN_PASSANT = new long[8];
+    private static final long BLACK_TO_MOVE;
+
+    static {
+        var state = new long[]{0x240C4E55L};
+        for (var i = 0; i < PIECES.length; i++) {
+            PIECES[i] = next(state);
+        }
+        // No castling rights hashes to zero so that a bare board's key is just its pieces
+        for (var i = 1; i < CASTLING.length; i++) {
+            CASTLING[i] = next(state);
+        }
+        for (var i = 0; i < EN_PASSANT.length; i++) {
+            EN_PASSANT[i] = next(state);
+        }
+        BLACK_TO_MOVE = next(state);
+    }
+
+    /**
+     * @return key for a piece standing on a square
+     */
+    public static long piece(ChessPiece piece, int square) {
+        return PIECES[(piece.getTeamColor().ordinal() * 6 + piece.getPieceType().ordinal()) * 64 + square];
+    }
+
+    /**
+     * @return key for a combination of castling rights flags
+     */
+    public static long castling(int rights) {
+        return CASTLING[rights];
+    }
+
+    /**
+     * @return key for an en passant target square (-1 for none)
+     */
+    public static long enPassant(int square) {
+        return square < 0 ? 0L : EN_PASSANT[square & 7];
+    }
+
+    /**
+     * @return key for the team to move
+     */
+    public static long side(ChessGame.TeamColor teamTurn) {
+        return teamTurn == ChessGame.TeamColor.BLACK ? BLACK_TO_MOVE : 0L;
+    }
+
+    // SplitMix64, spelled out so the sequence never depends on the JDK's Random implementation
+    private static long next(long[] state) {
+        var z = (state[0] += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
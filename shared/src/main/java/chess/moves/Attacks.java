@@ -0,0 +1,218 @@
+package chess.moves;
+
+import chess.Bitboard;
+import chess.ChessGame;
+import chess.ChessPiece;
+
+/**
+ * Attack tables for every piece type, built once when the class loads.
+ * <p>
+ * Knight, king and pawn attacks are a single lookup by square. Rook and bishop attacks use magic
+ * bitboards: the blockers on a slider's rays are multiplied by a per-square magic number whose top
+ * bits index a table holding the attack set for that blocker pattern.
+ */
+public class Attacks {
+    private static final long[] KNIGHT = new long[64];
+    private static final long[] KING = new long[64];
+    private static final long[][] PAWN = new long[2][64];
+
+    private static final long[] ROOK_MAGICS = {
+            0x0080002080104001L, 0x004000200010004CL, 0x1100102001004208L, 0x0080100008008004L,
+            0x320002009004A008L, 0x23800400802A0001L, 0x0C00082084010230L, 0x4100020341219300L,
+            0x0454800280204010L, 0x0004802000854004L, 0x0021002004110441L, 0x0000800800801000L,
+            0x4004800802808400L, 0x0022001002004884L, 0x1002000408010200L, 0x400100085A008100L,
+            0x2040008000482880L, 0x1040064020005000L, 0x8020420010208200L, 0x0010010020110408L,
+            0x0600050008001100L, 0x0002008002040080L, 0x0000040050214208L, 0x4040020000810044L,
+            0x1080004040002000L, 0x0040200040005008L, 0x0090420200102083L, 0x4048100100090421L,
+            0x0090100500080100L, 0x040850080104C020L, 0x0081880400021001L, 0x4806090200084084L,
+            0x0080804004800020L, 0x0008812005804000L, 0x6080802000801000L, 0x1810800800801000L,
+            0x1546800800800403L, 0x0000800400800200L, 0x0900020804000150L, 0x8003004082000401L,
+            0x0050401080208000L, 0x0420003000C0C008L, 0x0010040028002001L, 0x0209001000090020L,
+            0x7000040008008080L, 0x0102000400808002L, 0x120B040200010100L, 0x0E00008100420004L,
+            0x0480204082010200L, 0x0002090050208600L, 0x1020410020001900L, 0x0405009000208900L,
+            0x0010080004008080L, 0x2042008890C42200L, 0x2002800200010080L, 0x0005114402890200L,
+            0x0419004010220086L, 0x8100420100208012L, 0x040200801020440AL, 0x103F00081000602DL,
+            0x0101001028000423L, 0x8001000814000203L, 0x0240108810410214L, 0x0000884083140226L
+    };
+
+    private static final long[] BISHOP_MAGICS = {
+            0x104802182A040010L, 0x1020042882024410L, 0x0210009481109600L, 0x0A04440082002004L,
+            0x0042021000004000L, 0x9112020220041050L, 0x0D00820111C00000L, 0x0000808801302A08L,
+            0xA011061024280080L, 0x0000911000808081L, 0x0000644102020200L, 0x0000040418840201L,
+            0x0002240422400511L, 0x0000021130080942L, 0x9800009C11201000L, 0x200000422A012002L,
+            0x0148006060010243L, 0x4102002028020090L, 0x0044000808501200L, 0x0000800802810030L,
+            0x0001011820080014L, 0x18B10A4200900402L, 0x4004028084040225L, 0x0000804032011000L,
+            0x0008200008A00100L, 0x0401200029820400L, 0x0084120101080102L, 0x00208020C8020020L,
+            0x0101010080104000L, 0x0290010000208800L, 0x819A044024240200L, 0x0420888011041080L,
+            0x00080208501020A8L, 0x204090C410900400L, 0x0000580800140440L, 0x0006004040140100L,
+            0x0001100401208020L, 0x0220008900088040L, 0x2202484900684401L, 0xC00E02060000E0A0L,
+            0x000801300A001004L, 0x0029009004001010L, 0x400100C230002204L, 0x0040020102442400L,
+            0x6002880100400400L, 0x0032022041000A00L, 0x80901000C9000080L, 0x5001021293048208L,
+            0x0282080405048000L, 0x002A208410280000L, 0x0280088048088000L, 0x0180000442020800L,
+            0x0200004008220004L, 0x0061040408021810L, 0x202020040140403CL, 0x0002100101050061L,
+            0x0200104208044011L, 0x0300004042101100L, 0x0008020100411008L, 0x1410403040420201L,
+            0x00900000110A0A11L, 0x800200A015014A00L, 0x4044102008808080L, 0x0040300206204090L
+    };
+
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    private static final Magic[] ROOK = new Magic[64];
+    private static final Magic[] BISHOP = new Magic[64];
+
+    // Squares strictly between two squares, and the whole line through them, when they share a
+    // rank, file or diagonal (empty otherwise)
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    /**
+     * Magic lookup for one slider on one square
+     */
+    private record Magic(long mask, long magic, int shift, long[] attacks) {
+        long attacks(long occupied) {
+            return attacks[(int) (((occupied & mask) * magic) >>> shift)];
+        }
+    }
+
+    static {
+        for (var sq = 0; sq < 64; sq++) {
+            KNIGHT[sq] = steps(sq, new int[][]{{2, 1}, {2, -1}, {1, 2}, {-1, 2}, {-2, -1}, {-2, 1}, {-1, -2}, {1, -2}});
+            KING[sq] = steps(sq, new int[][]{{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}});
+            PAWN[ChessGame.TeamColor.WHITE.ordinal()][sq] = steps(sq, new int[][]{{1, 1}, {1, -1}});
+            PAWN[ChessGame.TeamColor.BLACK.ordinal()][sq] = steps(sq, new int[][]{{-1, 1}, {-1, -1}});
+            ROOK[sq] = buildMagic(sq, ROOK_MAGICS[sq], ROOK_DIRECTIONS);
+            BISHOP[sq] = buildMagic(sq, BISHOP_MAGICS[sq], BISHOP_DIRECTIONS);
+        }
+        for (var a = 0; a < 64; a++) {
+            for (var b = 0; b < 64; b++) {
+                var target = Bitboard.bit(b);
+                if ((rook(a, 0L) & target) != 0) {
+                    BETWEEN[a][b] = rook(a, target) & rook(b, Bitboard.bit(a));
+                    LINE[a][b] = (rook(a, 0L) & rook(b, 0L)) | Bitboard.bit(a) | target;
+                } else if ((bishop(a, 0L) & target) != 0) {
+                    BETWEEN[a][b] = bishop(a, target) & bishop(b, Bitboard.bit(a));
+                    LINE[a][b] = (bishop(a, 0L) & bishop(b, 0L)) | Bitboard.bit(a) | target;
+                }
+            }
+        }
+    }
+
+    public static long knight(int square) {
+        return KNIGHT[square];
+    }
+
+    public static long king(int square) {
+        return KING[square];
+    }
+
+    /**
+     * @return the squares a pawn of the given team attacks from the square
+     */
+    public static long pawn(ChessGame.TeamColor color, int square) {
+        return PAWN[color.ordinal()][square];
+    }
+
+    public static long rook(int square, long occupied) {
+        return ROOK[square].attacks(occupied);
+    }
+
+    public static long bishop(int square, long occupied) {
+        return BISHOP[square].attacks(occupied);
+    }
+
+    public static long queen(int square, long occupied) {
+        return ROOK[square].attacks(occupied) | BISHOP[square].attacks(occupied);
+    }
+
+    /**
+     * @return the squares strictly between two squares on a shared rank, file or diagonal,
+     * or an empty mask if they do not share one
+     */
+    public static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    /**
+     * @return the full rank, file or diagonal running through both squares, or an empty mask
+     * if they do not share one
+     */
+    public static long line(int a, int b) {
+        return LINE[a][b];
+    }
+
+    /**
+     * Gets the squares a piece attacks
+     *
+     * @param piece    the attacking piece
+     * @param square   the square the piece stands on
+     * @param occupied mask of every occupied square (blocks sliders)
+     * @return mask of attacked squares
+     */
+    public static long attacks(ChessPiece piece, int square, long occupied) {
+        return switch (piece.getPieceType()) {
+            case KING -> KING[square];
+            case QUEEN -> queen(square, occupied);
+            case BISHOP -> bishop(square, occupied);
+            case KNIGHT -> KNIGHT[square];
+            case ROOK -> rook(square, occupied);
+            case PAWN -> pawn(piece.getTeamColor(), square);
+        };
+    }
+
+    // Table construction helpers
+
+    private static long steps(int square, int[][] offsets) {
+        var mask = 0L;
+        for (var offset : offsets) {
+            mask |= ray(square, offset, 0L, false);
+        }
+        return mask;
+    }
+
+    private static Magic buildMagic(int square, long magic, int[][] directions) {
+        // Edge squares never block anything further along the ray, so they are left out of the mask
+        var mask = 0L;
+        for (var direction : directions) {
+            mask |= ray(square, direction, 0L, true) & ~edge(direction);
+        }
+        var bits = Long.bitCount(mask);
+        var table = new long[1 << bits];
+        var blockers = 0L;
+        do {
+            var attacks = 0L;
+            for (var direction : directions) {
+                attacks |= ray(square, direction, blockers, true);
+            }
+            table[(int) ((blockers * magic) >>> (64 - bits))] = attacks;
+            blockers = (blockers - mask) & mask;
+        } while (blockers != 0);
+        return new Magic(mask, magic, 64 - bits, table);
+    }
+
+    private static long ray(int square, int[] direction, long blockers, boolean slide) {
+        var mask = 0L;
+        var row = square / 8 + direction[0];
+        var col = square % 8 + direction[1];
+        while (row >= 0 && row < 8 && col >= 0 && col < 8) {
+            var bit = 1L << (row * 8 + col);
+            mask |= bit;
+            if (!slide || (blockers & bit) != 0) {
+                break;
+            }
+            row += direction[0];
+            col += direction[1];
+        }
+        return mask;
+    }
+
+    private static long edge(int[] direction) {
+        var edge = Bitboard.EMPTY;
+        if (direction[0] != 0) {
+            edge |= direction[0] > 0 ? Bitboard.RANK_8 : Bitboard.RANK_1;
+        }
+        if (direction[1] != 0) {
+            edge |= direction[1] > 0 ? Bitboard.FILE_H : Bitboard.FILE_A;
+        }
+        return edge;
+    }
+}
@@ -1,20 +1,10 @@
 package chess.moves;
 
 import chess.ChessBoard;
-import chess.ChessMove;
-import chess.ChessPosition;
-
-import java.util.Collection;
-import java.util.HashSet;
 
 public class BishopMoves extends Movement {
     @Override
-    public Collection<ChessMove> moves(ChessBoard board, ChessPosition position) {
-        var moves = new HashSet<ChessMove>();
-        calculateMoves(board, position, -1, -1, moves, true);
-        calculateMoves(board, position, 1, -1, moves, true);
-        calculateMoves(board, position, -1, 1, moves, true);
-        calculateMoves(board, position, 1, 1, moves, true);
-        return moves;
+    public long targets(ChessBoard board, int square) {
+        return Attacks.bishop(square, board.getBitboard().occupied()) & notOwn(board, square);
     }
 }
@@ -1,28 +1,24 @@
 package chess.moves;
 
-import java.util.ArrayList;
 import java.util.Collection;
 
+import chess.Bitboard;
 import chess.ChessBoard;
 import chess.ChessGame;
 import chess.ChessMove;
+import chess.ChessPiece;
 import chess.ChessPosition;
 
 public class KingMoves extends Movement {
     @Override
-    public Collection<ChessMove> moves(ChessBoard board, ChessPosition position) {
-        var moves = new ArrayList<ChessMove>();
-        calculateMoves(board, position, -1, 0, moves, false);
-        calculateMoves(board, position, 1, 0, moves, false);
-        calculateMoves(board, position, 0, 1, moves, false);
-        calculateMoves(board, position, 0, -1, moves, false);
-        calculateMoves(board, position, -1, -1, moves, false);
-        calculateMoves(board, position, 1, 1, moves, false);
-        calculateMoves(board, position, -1, 1, moves, false);
-        calculateMoves(board, position, 1, -1, moves, false);
+    public long targets(ChessBoard board, int square) {
+        return Attacks.king(square) & notOwn(board, square);
+    }
 
+    @Override
+    public Collection<ChessMove> moves(ChessBoard board, ChessPosition position) {
+        var moves = super.moves(board, position);
         addCastleMoves(board, position, moves);
-
         return moves;
     }
 
@@ -30,19 +26,21 @@ public class KingMoves extends Movement {
         var king = board.getPiece(pos);
         var color = king.getTeamColor();
         var teamRow = color == ChessGame.TeamColor.BLACK ? 8 : 1;
+        var rook = ChessPiece.of(color, ChessPiece.PieceType.ROOK);
 
-        var kingPos = new ChessPosition(teamRow, 5);
-        if (king.equals(board.getPiece(kingPos)) && board.isOriginalPosition(kingPos)) {
-            if (board.isOriginalPosition(new ChessPosition(teamRow, 8)) &&
+        if (pos.getRow() == teamRow && pos.getColumn() == 5) {
+            if (board.canCastle(color, true) &&
+                    rook.equals(board.getPiece(Bitboard.position(Bitboard.square(teamRow, 8)))) &&
                     board.isSquareEmpty(teamRow, 6) &&
                     board.isSquareEmpty(teamRow, 7)) {
-                moves.add(new ChessMove(pos, new ChessPosition(teamRow, 7), null));
+                moves.add(new ChessMove(pos, Bitboard.position(Bitboard.square(teamRow, 7)), null));
             }
-            if (board.isOriginalPosition(new ChessPosition(teamRow, 1)) &&
+            if (board.canCastle(color, false) &&
+                    rook.equals(board.getPiece(Bitboard.position(Bitboard.square(teamRow, 1)))) &&
                     board.isSquareEmpty(teamRow, 2) &&
                     board.isSquareEmpty(teamRow, 3) &&
                     board.isSquareEmpty(teamRow, 4)) {
-                moves.add(new ChessMove(pos, new ChessPosition(teamRow, 3), null));
+                moves.add(new ChessMove(pos, Bitboard.position(Bitboard.square(teamRow, 3)), null));
             }
         }
     }
@@ -0,0 +1,269 @@
+package chess.moves;
+
+import chess.Bitboard;
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.PackedMove;
+
+/**
+ * Generates the moves of a whole team straight from the bitboard into an int buffer of
+ * {@link PackedMove packed moves}. Nothing is allocated, so it can run in hot loops.
+ * <p>
+ * Legal moves are generated directly rather than by trying each candidate: the pieces giving
+ * check and the pieces pinned to their king are found once per position. In check, non-king
+ * moves are limited to capturing the checker or blocking its ray (and only the king may move out
+ * of a double check); a pinned piece may only move along its pin; and the king never steps onto
+ * an attacked square.
+ */
+public final class MoveGenerator {
+    /**
+     * Buffer size that fits the moves of any position
+     */
+    public static final int MAX_MOVES = 256;
+
+    private static final ChessPiece.PieceType[] PROMOTIONS = {
+            ChessPiece.PieceType.QUEEN,
+            ChessPiece.PieceType.ROOK,
+            ChessPiece.PieceType.BISHOP,
+            ChessPiece.PieceType.KNIGHT
+    };
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Generates the legal moves of a team, whether or not it is the team's turn
+     *
+     * @param board  the board
+     * @param color  the team to move
+     * @param buffer receives the moves; {@link #MAX_MOVES} long is always enough
+     * @return number of moves written to the buffer
+     */
+    public static int legalMoves(ChessBoard board, ChessGame.TeamColor color, int[] buffer) {
+        return generate(board, color, buffer, true, MAX_MOVES);
+    }
+
+    /**
+     * Checks whether a team has any legal move. Generation stops as soon as one piece has a
+     * legal move, and the king is tried first.
+     *
+     * @param board  the board
+     * @param color  the team to move
+     * @param buffer scratch space, at least {@link #MAX_MOVES} long
+     * @return true if the team can move
+     */
+    public static boolean hasLegalMove(ChessBoard board, ChessGame.TeamColor color, int[] buffer) {
+        return generate(board, color, buffer, true, 1) > 0;
+    }
+
+    /**
+     * Generates the moves of a team without checking whether they leave its king in check.
+     * Castling is only generated when the king does not start in or pass through check.
+     *
+     * @param board  the board
+     * @param color  the team to move
+     * @param buffer receives the moves
+     * @return number of moves written to the buffer
+     */
+    public static int pseudoLegalMoves(ChessBoard board, ChessGame.TeamColor color, int[] buffer) {
+        return generate(board, color, buffer, false, MAX_MOVES);
+    }
+
+    /**
+     * @param limit stop once at least this many moves have been found; moves are still added a
+     *              whole piece at a time, so the count may go past it
+     */
+    private static int generate(ChessBoard board, ChessGame.TeamColor color, int[] buffer, boolean legal, int limit) {
+        var bits = board.getBitboard();
+        var occupied = bits.occupied();
+        var own = bits.team(color);
+        var enemy = color.opponent();
+        var enemies = bits.team(enemy);
+        var kings = bits.pieces(color, ChessPiece.PieceType.KING);
+
+        // Without a king there is nothing to leave in check, so every move is legal
+        var king = kings == Bitboard.EMPTY ? -1 : Bitboard.first(kings);
+        legal &= king >= 0;
+
+        var checkers = legal ? bits.attackersTo(king, enemy, occupied) : Bitboard.EMPTY;
+        var pinned = legal ? pinned(bits, color, king, occupied) : Bitboard.EMPTY;
+
+        var count = 0;
+        for (var mask = kings; mask != 0; mask &= mask - 1) {
+            var from = Bitboard.first(mask);
+            var targets = Attacks.king(from) & ~own;
+            if (legal) {
+                // The king must not stay on a slider's line, so look through its own square
+                var withoutKing = occupied ^ Bitboard.bit(from);
+                for (var safe = targets; safe != 0; safe &= safe - 1) {
+                    var to = Bitboard.first(safe);
+                    if (bits.attackersTo(to, enemy, withoutKing) != 0) {
+                        targets &= ~Bitboard.bit(to);
+                    }
+                }
+            }
+            count = addMoves(from, targets, enemies, buffer, count);
+        }
+        if (count >= limit || Long.bitCount(checkers) > 1) {
+            return count;
+        }
+
+        // Squares that resolve a single check: capture the checker or block its ray
+        var evasions = ~own;
+        if (checkers != Bitboard.EMPTY) {
+            var checker = Bitboard.first(checkers);
+            evasions &= Attacks.between(king, checker) | checkers;
+        }
+
+        count = pawnMoves(board, color, king, evasions, pinned, legal, buffer, count, limit);
+        for (var mask = bits.pieces(color, ChessPiece.PieceType.KNIGHT) & ~pinned; mask != 0 && count < limit; mask &= mask - 1) {
+            var from = Bitboard.first(mask);
+            count = addMoves(from, Attacks.knight(from) & evasions, enemies, buffer, count);
+        }
+        var bishops = bits.pieces(color, ChessPiece.PieceType.BISHOP) | bits.pieces(color, ChessPiece.PieceType.QUEEN);
+        for (var mask = bishops; mask != 0 && count < limit; mask &= mask - 1) {
+            var from = Bitboard.first(mask);
+            count = addMoves(from, Attacks.bishop(from, occupied) & evasions & pinRay(king, from, pinned), enemies, buffer, count);
+        }
+        var rooks = bits.pieces(color, ChessPiece.PieceType.ROOK) | bits.pieces(color, ChessPiece.PieceType.QUEEN);
+        for (var mask = rooks; mask != 0 && count < limit; mask &= mask - 1) {
+            var from = Bitboard.first(mask);
+            count = addMoves(from, Attacks.rook(from, occupied) & evasions & pinRay(king, from, pinned), enemies, buffer, count);
+        }
+        if (checkers == Bitboard.EMPTY && count < limit) {
+            count = castleMoves(board, color, legal, buffer, count);
+        }
+        return count;
+    }
+
+    /**
+     * Finds the team's pieces that stand alone between their king and an enemy slider
+     */
+    private static long pinned(Bitboard bits, ChessGame.TeamColor color, int king, long occupied) {
+        var enemy = color.opponent();
+        var queens = bits.pieces(enemy, ChessPiece.PieceType.QUEEN);
+        var snipers = (Attacks.rook(king, Bitboard.EMPTY) & (bits.pieces(enemy, ChessPiece.PieceType.ROOK) | queens))
+                | (Attacks.bishop(king, Bitboard.EMPTY) & (bits.pieces(enemy, ChessPiece.PieceType.BISHOP) | queens));
+        var pinned = Bitboard.EMPTY;
+        for (; snipers != 0; snipers &= snipers - 1) {
+            var blockers = Attacks.between(king, Bitboard.first(snipers)) & occupied;
+            if (Long.bitCount(blockers) == 1) {
+                pinned |= blockers & bits.team(color);
+            }
+        }
+        return pinned;
+    }
+
+    /**
+     * @return the squares a piece may move to without exposing its king: anywhere if it is not
+     * pinned, otherwise the line through the king and the piece
+     */
+    private static long pinRay(int king, int from, long pinned) {
+        return (pinned & Bitboard.bit(from)) == 0 ? -1L : Attacks.line(king, from);
+    }
+
+    private static int addMoves(int from, long targets, long enemies, int[] buffer, int count) {
+        for (; targets != 0; targets &= targets - 1) {
+            var to = Bitboard.first(targets);
+            var flags = (enemies & Bitboard.bit(to)) != 0 ? PackedMove.CAPTURE : PackedMove.QUIET;
+            buffer[count++] = PackedMove.of(from, to, flags);
+        }
+        return count;
+    }
+
+    private static int pawnMoves(ChessBoard board, ChessGame.TeamColor color, int king, long evasions, long pinned,
+                                 boolean legal, int[] buffer, int count, int limit) {
+        var bits = board.getBitboard();
+        var empty = ~bits.occupied();
+        var enemies = bits.team(color.opponent());
+        var white = color == ChessGame.TeamColor.WHITE;
+        var forward = white ? 8 : -8;
+        var startRow = white ? 2 : 7;
+        var passant = board.getEnPassantSquare();
+        var passantMask = Bitboard.EMPTY;
+        if (passant != null && passant.getRow() == (white ? 6 : 3)) {
+            passantMask = Bitboard.bit(Bitboard.square(passant));
+        }
+
+        for (var mask = bits.pieces(color, ChessPiece.PieceType.PAWN); mask != 0 && count < limit; mask &= mask - 1) {
+            var from = Bitboard.first(mask);
+            var allowed = evasions & pinRay(king, from, pinned);
+            var to = from + forward;
+            if (to >= 0 && to < 64 && (empty & Bitboard.bit(to)) != 0) {
+                if ((allowed & Bitboard.bit(to)) != 0) {
+                    count = addPawnMove(from, to, false, buffer, count);
+                }
+                var twoForward = to + forward;
+                if (Bitboard.row(from) == startRow && (empty & allowed & Bitboard.bit(twoForward)) != 0) {
+                    buffer[count++] = PackedMove.of(from, twoForward, PackedMove.DOUBLE_PAWN_PUSH);
+                }
+            }
+            var attacks = Attacks.pawn(color, from);
+            for (var captures = attacks & enemies & allowed; captures != 0; captures &= captures - 1) {
+                count = addPawnMove(from, Bitboard.first(captures), true, buffer, count);
+            }
+            if ((attacks & passantMask) != 0) {
+                var target = Bitboard.first(passantMask);
+                if (!legal || isLegalEnPassant(bits, color, king, from, target)) {
+                    buffer[count++] = PackedMove.of(from, target, PackedMove.EN_PASSANT);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * En passant removes two pawns from their squares at once, which can uncover a slider on the
+     * king's rank that neither pin detection nor the check mask sees, so it gets a full test.
+     */
+    private static boolean isLegalEnPassant(Bitboard bits, ChessGame.TeamColor color, int king, int from, int to) {
+        var captured = Bitboard.square(Bitboard.row(from), Bitboard.column(to));
+        var occupied = (bits.occupied() ^ Bitboard.bit(from) ^ Bitboard.bit(captured)) | Bitboard.bit(to);
+        return (bits.attackersTo(king, color.opponent(), occupied) & ~Bitboard.bit(captured)) == 0;
+    }
+
+    private static int addPawnMove(int from, int to, boolean capture, int[] buffer, int count) {
+        var row = Bitboard.row(to);
+        if (row == 1 || row == 8) {
+            for (var type : PROMOTIONS) {
+                buffer[count++] = PackedMove.promotion(from, to, capture, type);
+            }
+        } else {
+            buffer[count++] = PackedMove.of(from, to, capture ? PackedMove.CAPTURE : PackedMove.QUIET);
+        }
+        return count;
+    }
+
+    private static int castleMoves(ChessBoard board, ChessGame.TeamColor color, boolean legal, int[] buffer, int count) {
+        var bits = board.getBitboard();
+        var row = color == ChessGame.TeamColor.WHITE ? 1 : 8;
+        var king = Bitboard.square(row, 5);
+        if ((bits.pieces(color, ChessPiece.PieceType.KING) & Bitboard.bit(king)) == 0) {
+            return count;
+        }
+
+        // The king may not castle out of or through check; when generating legal moves it may not
+        // land in check either
+        var rooks = bits.pieces(color, ChessPiece.PieceType.ROOK);
+        var occupied = bits.occupied();
+        var enemy = color.opponent();
+        if (board.canCastle(color, true)
+                && (rooks & Bitboard.bit(king + 3)) != 0
+                && (occupied & (Bitboard.bit(king + 1) | Bitboard.bit(king + 2))) == 0
+                && bits.attackersTo(king, enemy, occupied) == 0
+                && bits.attackersTo(king + 1, enemy, occupied) == 0
+                && (!legal || bits.attackersTo(king + 2, enemy, occupied) == 0)) {
+            buffer[count++] = PackedMove.of(king, king + 2, PackedMove.KING_CASTLE);
+        }
+        if (board.canCastle(color, false)
+                && (rooks & Bitboard.bit(king - 4)) != 0
+                && (occupied & (Bitboard.bit(king - 1) | Bitboard.bit(king - 2) | Bitboard.bit(king - 3))) == 0
+                && bits.attackersTo(king, enemy, occupied) == 0
+                && bits.attackersTo(king - 1, enemy, occupied) == 0
+                && (!legal || bits.attackersTo(king - 2, enemy, occupied) == 0)) {
+            buffer[count++] = PackedMove.of(king, king - 2, PackedMove.QUEEN_CASTLE);
+        }
+        return count;
+    }
+}
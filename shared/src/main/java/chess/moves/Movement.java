@@ -1,30 +1,41 @@
 package chess.moves;
 
+import java.util.ArrayList;
 import java.util.Collection;
 
+import chess.Bitboard;
 import chess.ChessBoard;
 import chess.ChessMove;
 import chess.ChessPosition;
 
 public abstract class Movement {
-    protected void calculateMoves(ChessBoard board, ChessPosition pos, int rowInc, int colInc, Collection<ChessMove> moves, boolean allowDistance) {
-        var pieceColor = board.getPiece(pos).getTeamColor();
-        int row = pos.getRow() + rowInc;
-        int col = pos.getColumn() + colInc;
-        while (row > 0 && col > 0 && row < 9 && col < 9) {
-            var newPos = new ChessPosition(row, col);
-            var pieceAt = board.getPiece(newPos);
-            if (pieceAt == null || pieceAt.getTeamColor() != pieceColor) {
-                moves.add(new ChessMove(pos, newPos, null));
-                row += rowInc;
-                col += colInc;
-            }
+    /**
+     * Gets the squares the piece on a square can move to, ignoring moves that would leave
+     * its king in danger. Reads the precomputed attack tables and allocates nothing.
+     *
+     * @param board  the board
+     * @param square index of the piece's square (see {@link Bitboard#square})
+     * @return mask of target squares
+     */
+    public abstract long targets(ChessBoard board, int square);
 
-            if (!allowDistance || pieceAt != null) {
-                break;
-            }
+    public Collection<ChessMove> moves(ChessBoard board, ChessPosition position) {
+        var moves = new ArrayList<ChessMove>();
+        addMoves(position, targets(board, Bitboard.square(position)), moves);
+        return moves;
+    }
+
+    protected void addMoves(ChessPosition position, long targets, Collection<ChessMove> moves) {
+        for (; targets != 0; targets &= targets - 1) {
+            moves.add(new ChessMove(position, Bitboard.position(Bitboard.first(targets)), null));
         }
     }
 
-    public abstract Collection<ChessMove> moves(ChessBoard board, ChessPosition position);
+    /**
+     * @return mask of the squares a move may end on: empty or held by the other team
+     */
+    protected static long notOwn(ChessBoard board, int square) {
+        var color = board.getPiece(Bitboard.position(square)).getTeamColor();
+        return ~board.getBitboard().team(color);
+    }
 }
@@ -1,46 +1,40 @@
 package chess.moves;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 
 import chess.*;
 
 public class PawnMoves extends Movement {
-    @Override
-    public Collection<ChessMove> moves(ChessBoard board, ChessPosition pos) {
-        var pieceColor = board.getPiece(pos).getTeamColor();
-
-        var moves = new HashSet<ChessMove>();
-        var direction = (pieceColor == ChessGame.TeamColor.WHITE ? 1 : -1);
-
-        calculateMoves(board, pos, direction, 0, moves, false);
-        calculateMoves(board, pos, direction, -1, moves, true);
-        calculateMoves(board, pos, direction, 1, moves, true);
-        addEnPassantMoves(board, pos, moves);
+    private static final long RANK_3 = Bitboard.RANK_1 << 16;
+    private static final long RANK_6 = Bitboard.RANK_1 << 40;
 
-        if (pieceColor == ChessGame.TeamColor.WHITE && pos.getRow() == 2 || pieceColor == ChessGame.TeamColor.BLACK && pos.getRow() == 7) {
-            if (board.isSquareEmpty(pos.getRow() + direction, pos.getColumn())
-                    && board.isSquareEmpty(pos.getRow() + (direction * 2), pos.getColumn())) {
-                moves.add(new ChessMove(pos, new ChessPosition(pos.getRow() + (direction * 2), pos.getColumn()), null));
-            }
+    @Override
+    public long targets(ChessBoard board, int square) {
+        var bits = board.getBitboard();
+        var pieceColor = board.getPiece(Bitboard.position(square)).getTeamColor();
+        var enemyColor = pieceColor.opponent();
+        var empty = ~bits.occupied();
+
+        long pushes;
+        if (pieceColor == ChessGame.TeamColor.WHITE) {
+            pushes = (Bitboard.bit(square) << 8) & empty;
+            pushes |= ((pushes & RANK_3) << 8) & empty;
+        } else {
+            pushes = (Bitboard.bit(square) >>> 8) & empty;
+            pushes |= ((pushes & RANK_6) >>> 8) & empty;
         }
-
-        return moves;
+        return pushes | (Attacks.pawn(pieceColor, square) & bits.team(enemyColor));
     }
 
     @Override
-    protected void calculateMoves(ChessBoard board, ChessPosition pos, int rowInc, int colInc, Collection<ChessMove> moves, boolean attack) {
-        var pieceColor = board.getPiece(pos).getTeamColor();
-        int row = pos.getRow() + rowInc;
-        int col = pos.getColumn() + colInc;
-        if (row > 0 && col > 0 && row < 9 && col < 9) {
-            var newPos = new ChessPosition(row, col);
-            var pieceAt = board.getPiece(newPos);
-            if ((attack && pieceAt != null && pieceAt.getTeamColor() != pieceColor)
-                    || (!attack && pieceAt == null)) {
-                addMoveWithPossiblePromotion(pos, newPos, moves);
-            }
+    public Collection<ChessMove> moves(ChessBoard board, ChessPosition pos) {
+        var moves = new ArrayList<ChessMove>();
+        for (var targets = targets(board, Bitboard.square(pos)); targets != 0; targets &= targets - 1) {
+            addMoveWithPossiblePromotion(pos, Bitboard.position(Bitboard.first(targets)), moves);
         }
+        addEnPassantMoves(board, pos, moves);
+        return moves;
     }
 
     private void addMoveWithPossiblePromotion(ChessPosition pos, ChessPosition newPos, Collection<ChessMove> moves) {
@@ -54,27 +48,14 @@ public class PawnMoves extends Movement {
         }
     }
 
-    private void addEnPassantMoves(ChessBoard board, ChessPosition pos, HashSet<ChessMove> moves) {
-        var pawn = board.getPiece(pos);
-        var color = pawn.getTeamColor();
-        var passantRow = color == ChessGame.TeamColor.BLACK ? 4 : 5;
-        var startRow = color == ChessGame.TeamColor.BLACK ? 2 : 7;
-        var attackRow = color == ChessGame.TeamColor.BLACK ? 3 : 6;
-
-        addPassant(pos.getColumn(), pos.getColumn() + 1, passantRow, startRow, attackRow, board, color, moves);
-        addPassant(pos.getColumn(), pos.getColumn() - 1, passantRow, startRow, attackRow, board, color, moves);
-    }
-
-    private void addPassant(int column, int passantColumn, int passantRow,
-                            int startRow, int attackRow, ChessBoard board, ChessGame.TeamColor color, HashSet<ChessMove> moves) {
-        if (passantColumn >= 1 && passantColumn <= 8) {
-            var passantMove = new ChessMove(new ChessPosition(startRow, passantColumn), new ChessPosition(passantRow, passantColumn), null);
-            var candidate = board.getPiece(passantMove.getEndPosition());
-            if (candidate != null && candidate.getPieceType() == ChessPiece.PieceType.PAWN && candidate.getTeamColor() != color) {
-                var lastMove = board.getLastMove();
-                if (passantMove.equals(lastMove)) {
-                    moves.add(new ChessMove(new ChessPosition(passantRow, column), new ChessPosition(attackRow, passantColumn), null));
-                }
+    private void addEnPassantMoves(ChessBoard board, ChessPosition pos, Collection<ChessMove> moves) {
+        var passant = board.getEnPassantSquare();
+        if (passant != null) {
+            var color = board.getPiece(pos).getTeamColor();
+            var attackRow = color == ChessGame.TeamColor.BLACK ? 3 : 6;
+            var attacks = Attacks.pawn(color, Bitboard.square(pos));
+            if (passant.getRow() == attackRow && (attacks & Bitboard.bit(Bitboard.square(passant))) != 0) {
+                moves.add(new ChessMove(pos, passant, null));
             }
         }
     }
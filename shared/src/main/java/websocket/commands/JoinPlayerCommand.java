@@ -5,9 +5,16 @@ import chess.ChessGame;
 import static websocket.commands.UserGameCommand.CommandType.CONNECT;
 public class JoinPlayerCommand extends GameCommand {
     public final ChessGame.TeamColor teamColor;
+    // Receive MOVE_APPLIED deltas after each move instead of the full game
+    public final boolean moveDeltas;
 
     public JoinPlayerCommand(String authToken, Integer gameId, ChessGame.TeamColor teamColor) {
+        this(authToken, gameId, teamColor, false);
+    }
+
+    public JoinPlayerCommand(String authToken, Integer gameId, ChessGame.TeamColor teamColor, boolean moveDeltas) {
         super(CONNECT, authToken, gameId);
         this.teamColor = teamColor;
+        this.moveDeltas = moveDeltas;
     }
 }
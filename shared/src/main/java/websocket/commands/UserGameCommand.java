@@ -14,7 +14,8 @@ public class UserGameCommand {
         CONNECT,
         MAKE_MOVE,
         LEAVE,
-        RESIGN
+        RESIGN,
+        RESYNC
     }
 
     public String getAuthString() {
@@ -0,0 +1,40 @@
+package websocket.messages;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.PackedMove;
+import model.GameData;
+
+/**
+ * Tells a client that has the game loaded which move was just made, instead of sending the whole
+ * game again. The client plays the move on its copy and compares the resulting position key; if
+ * the ply doesn't follow its copy or the keys differ it asks for the full game with a RESYNC
+ * command.
+ */
+public class MoveAppliedMessage extends SerializableServerMessage {
+    public int gameID;
+    // Number of moves in the game once this one is made
+    public int ply;
+    // The move in PackedMove form
+    public int move;
+    // Zobrist key of the resulting position, in hex since it doesn't fit a JavaScript number
+    public String positionKey;
+    public GameData.State state;
+
+    public MoveAppliedMessage(GameData gameData, ChessMove move) {
+        super(ServerMessageType.MOVE_APPLIED);
+        this.gameID = gameData.gameID();
+        this.ply = gameData.game().getBoard().getHistory().size();
+        this.move = PackedMove.of(move);
+        this.positionKey = positionKey(gameData.game());
+        this.state = gameData.state();
+    }
+
+    public ChessMove getMove() {
+        return PackedMove.toChessMove(move);
+    }
+
+    public static String positionKey(ChessGame game) {
+        return Long.toHexString(game.positionKey());
+    }
+}
@@ -8,6 +8,7 @@ public class ServerMessage {
         LOAD_GAME,
         ERROR,
         NOTIFICATION,
+        MOVE_APPLIED,
     }
 
     public ServerMessage(ServerMessageType type) {
@@ -0,0 +1,87 @@
+package chess;
+
+import jdk.jfr.Description;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class GameCodecTests {
+
+    @Test
+    @Description("Reference positions decode to the same position, turn, rights and en passant square")
+    public void positionRoundTripTest() {
+        for (var position : Perft.POSITIONS) {
+            var game = Fen.parse(position.fen());
+            var decoded = GameCodec.decode(GameCodec.encode(game));
+            Assertions.assertEquals(Fen.format(game), Fen.format(decoded), position.name());
+            Assertions.assertEquals(game.positionKey(), decoded.positionKey(), position.name());
+        }
+    }
+
+    @Test
+    @Description("A played game keeps its history, including promotions, castling and en passant")
+    public void historyRoundTripTest() throws Exception {
+        var game = new ChessGame();
+        for (var move : "e2e4 d7d5 e4e5 f7f5 e5f6 g8h6 f6g7 b8c6 g7h8n c8e6 g1f3 d8d6 f1e2 e8c8 e1g1".split(" ")) {
+            game.makeMove(new ChessMove(move));
+        }
+        var decoded = GameCodec.decode(GameCodec.encode(game));
+        Assertions.assertEquals(game, decoded);
+        Assertions.assertEquals(game.getTeamTurn(), decoded.getTeamTurn());
+        Assertions.assertEquals(game.getBoard().getHistory(), decoded.getBoard().getHistory());
+        Assertions.assertEquals(Fen.format(game), Fen.format(decoded));
+        Assertions.assertEquals(game.positionKey(), decoded.positionKey());
+    }
+
+    @Test
+    @Description("Games stored as JSON are still readable")
+    public void jsonFallbackTest() throws Exception {
+        var game = new ChessGame();
+        game.makeMove(new ChessMove("e2e4"));
+        var json = game.toString().getBytes(StandardCharsets.UTF_8);
+        var decoded = GameCodec.decode(json);
+        Assertions.assertEquals(game, decoded);
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, decoded.getTeamTurn());
+    }
+
+    @Test
+    @Description("The binary form is far smaller than JSON")
+    public void sizeTest() throws Exception {
+        var game = new ChessGame();
+        for (var move : "e2e4 e7e5 g1f3 b8c6 f1b5 a7a6 b5a4 g8f6 e1g1 f8e7".split(" ")) {
+            game.makeMove(new ChessMove(move));
+        }
+        var binary = GameCodec.encode(game);
+        var json = game.toString().getBytes(StandardCharsets.UTF_8);
+        Assertions.assertEquals(39 + 2 * 10, binary.length);
+        Assertions.assertTrue(binary.length * 10 < json.length);
+    }
+
+    @Test
+    @Description("Truncated data and unknown versions are rejected")
+    public void invalidDataTest() {
+        var data = GameCodec.encode(new ChessGame());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> GameCodec.decode(Arrays.copyOf(data, 20)));
+        data[0] = 99;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> GameCodec.decode(data));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> GameCodec.decode(new byte[0]));
+    }
+
+    @Test
+    @Description("Unknown piece codes and en passant squares off the board are rejected")
+    public void corruptDataTest() {
+        for (var nibble : new int[]{7, 8, 15}) {
+            var data = GameCodec.encode(new ChessGame());
+            // a1 is the low nibble of the first square byte
+            data[5] = (byte) ((data[5] & 0xF0) | nibble);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> GameCodec.decode(data), "piece " + nibble);
+        }
+        for (var square : new int[]{64, 200, 254}) {
+            var data = GameCodec.encode(new ChessGame());
+            data[2] = (byte) square;
+            Assertions.assertThrows(IllegalArgumentException.class, () -> GameCodec.decode(data), "square " + square);
+        }
+    }
+}
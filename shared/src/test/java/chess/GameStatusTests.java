@@ -0,0 +1,82 @@
+package chess;
+
+import jdk.jfr.Description;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class GameStatusTests {
+
+    @Test
+    @Description("The starting position is in progress")
+    public void inProgressTest() {
+        var status = new ChessGame().evaluateStatus();
+        Assertions.assertEquals(new GameStatus(ChessGame.TeamColor.WHITE, false, GameStatus.Outcome.IN_PROGRESS), status);
+        Assertions.assertFalse(status.isGameOver());
+    }
+
+    @Test
+    @Description("Check without mate is reported for the team to move")
+    public void checkTest() {
+        var status = Fen.parse("4k3/8/8/8/8/8/4r3/R3K3 w - - 0 1").evaluateStatus();
+        Assertions.assertTrue(status.check());
+        Assertions.assertEquals(GameStatus.Outcome.IN_PROGRESS, status.outcome());
+    }
+
+    @Test
+    @Description("Fool's mate is checkmate with black as the winner")
+    public void checkmateTest() {
+        var status = Fen.parse("rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w KQkq - 1 3").evaluateStatus();
+        Assertions.assertEquals(GameStatus.Outcome.CHECKMATE, status.outcome());
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, status.winner());
+        Assertions.assertFalse(status.isDraw());
+    }
+
+    @Test
+    @Description("No legal moves while not in check is stalemate")
+    public void stalemateTest() {
+        var status = Fen.parse("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1").evaluateStatus();
+        Assertions.assertEquals(GameStatus.Outcome.STALEMATE, status.outcome());
+        Assertions.assertTrue(status.isDraw());
+        Assertions.assertNull(status.winner());
+    }
+
+    @Test
+    @Description("Bare kings, a lone minor piece and same colored bishops cannot mate")
+    public void insufficientMaterialTest() {
+        Assertions.assertEquals(GameStatus.Outcome.INSUFFICIENT_MATERIAL,
+                Fen.parse("4k3/8/8/8/8/8/8/4K3 w - - 0 1").evaluateStatus().outcome());
+        Assertions.assertEquals(GameStatus.Outcome.INSUFFICIENT_MATERIAL,
+                Fen.parse("4k3/8/8/8/8/8/8/4KN2 w - - 0 1").evaluateStatus().outcome());
+        Assertions.assertEquals(GameStatus.Outcome.INSUFFICIENT_MATERIAL,
+                Fen.parse("2b1k3/8/8/8/8/8/8/4KB2 w - - 0 1").evaluateStatus().outcome());
+        Assertions.assertEquals(GameStatus.Outcome.IN_PROGRESS,
+                Fen.parse("1b2k3/8/8/8/8/8/8/4KB2 w - - 0 1").evaluateStatus().outcome());
+        Assertions.assertEquals(GameStatus.Outcome.IN_PROGRESS,
+                Fen.parse("4k3/8/8/8/8/8/8/3NKN2 w - - 0 1").evaluateStatus().outcome());
+        Assertions.assertEquals(GameStatus.Outcome.IN_PROGRESS,
+                Fen.parse("4k3/8/8/8/8/8/4P3/4K3 w - - 0 1").evaluateStatus().outcome());
+    }
+
+    @Test
+    @Description("A hundred plies without a capture or pawn move is a draw")
+    public void fiftyMoveRuleTest() throws InvalidMoveException {
+        var game = Fen.parse("4k3/8/8/8/8/8/8/R3K3 w - - 99 80");
+        Assertions.assertEquals(GameStatus.Outcome.IN_PROGRESS, game.evaluateStatus().outcome());
+        game.makeMove(new ChessMove(new ChessPosition(1, 1), new ChessPosition(2, 1), null));
+        Assertions.assertEquals(100, game.getBoard().getHalfmoveClock());
+        Assertions.assertEquals(GameStatus.Outcome.FIFTY_MOVE_RULE, game.evaluateStatus().outcome());
+    }
+
+    @Test
+    @Description("Pawn moves and captures reset the halfmove clock, and unmaking a move restores it")
+    public void halfmoveClockTest() throws InvalidMoveException {
+        var game = new ChessGame();
+        game.makeMove(new ChessMove(new ChessPosition(1, 2), new ChessPosition(3, 3), null));
+        Assertions.assertEquals(1, game.getBoard().getHalfmoveClock());
+        game.getBoard().makeMove(new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null));
+        Assertions.assertEquals(0, game.getBoard().getHalfmoveClock());
+        game.getBoard().unmakeMove();
+        Assertions.assertEquals(1, game.getBoard().getHalfmoveClock());
+        Assertions.assertEquals(1, ChessGame.createGame(game.toString()).getBoard().getHalfmoveClock());
+    }
+}
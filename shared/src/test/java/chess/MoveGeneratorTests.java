@@ -0,0 +1,98 @@
+package chess;
+
+import chess.moves.MoveGenerator;
+import jdk.jfr.Description;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+
+public class MoveGeneratorTests {
+
+    @Test
+    @Description("The packed generator agrees with validMoves for every piece")
+    public void matchesValidMovesTest() {
+        for (var position : Perft.POSITIONS) {
+            var game = Fen.parse(position.fen());
+            var fromPieces = new HashSet<ChessMove>();
+            for (var square : game.getBoard().chessSquareCollection(game.getTeamTurn())) {
+                fromPieces.addAll(game.validMoves(square.getPosition()));
+            }
+            var buffer = new int[MoveGenerator.MAX_MOVES];
+            var count = game.generateLegalMoves(buffer);
+            var generated = new HashSet<ChessMove>();
+            for (var i = 0; i < count; i++) {
+                generated.add(PackedMove.toChessMove(buffer[i]));
+            }
+            Assertions.assertEquals(fromPieces, generated, position.name());
+            Assertions.assertEquals(count, generated.size(), position.name());
+        }
+    }
+
+    @Test
+    @Description("Legal moves computed from pins and checkers match trying every pseudo-legal move")
+    public void matchesTrialMovesTest() {
+        for (var position : Perft.POSITIONS) {
+            var game = Fen.parse(position.fen());
+            game.generateLegalMoves(move -> {
+                game.getBoard().makeMove(move);
+                game.setTeamTurn(game.getTeamTurn().opponent());
+                assertMatchesTrialMoves(game, position.name() + " " + PackedMove.toString(move));
+                game.getBoard().unmakeMove();
+                game.setTeamTurn(game.getTeamTurn().opponent());
+            });
+        }
+    }
+
+    private static void assertMatchesTrialMoves(ChessGame game, String message) {
+        var board = game.getBoard();
+        var buffer = new int[MoveGenerator.MAX_MOVES];
+        var expected = new HashSet<ChessMove>();
+        var count = MoveGenerator.pseudoLegalMoves(board, game.getTeamTurn(), buffer);
+        for (var i = 0; i < count; i++) {
+            var move = PackedMove.toChessMove(buffer[i]);
+            if (board.isLegalMove(move)) {
+                expected.add(move);
+            }
+        }
+        var actual = new HashSet<ChessMove>();
+        count = game.generateLegalMoves(buffer);
+        for (var i = 0; i < count; i++) {
+            actual.add(PackedMove.toChessMove(buffer[i]));
+        }
+        Assertions.assertEquals(expected, actual, message);
+    }
+
+    @Test
+    @Description("A sink can make moves and generate again while it receives moves")
+    public void nestedSinkTest() {
+        var game = Fen.parse(Perft.POSITIONS.get(1).fen());
+        var nodes = new long[1];
+        game.generateLegalMoves(move -> {
+            game.getBoard().makeMove(move);
+            game.setTeamTurn(game.getTeamTurn().opponent());
+            game.generateLegalMoves(reply -> nodes[0]++);
+            game.getBoard().unmakeMove();
+            game.setTeamTurn(game.getTeamTurn().opponent());
+        });
+        Assertions.assertEquals(2_039, nodes[0]);
+    }
+
+    @Test
+    @Description("Only the team to move may move, and only with legal moves")
+    public void isLegalMoveTest() throws Exception {
+        var game = new ChessGame();
+        Assertions.assertTrue(game.isLegalMove(new ChessMove("e2e4")));
+        Assertions.assertFalse(game.isLegalMove(new ChessMove("e7e5")));
+        Assertions.assertFalse(game.isLegalMove(new ChessMove("e2e5")));
+        Assertions.assertFalse(game.isLegalMove(new ChessMove("e3e4")));
+        Assertions.assertFalse(game.isLegalMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5),
+                ChessPiece.PieceType.QUEEN)));
+
+        var promotion = Fen.parse("8/4P2k/8/8/8/8/8/4K3 w - - 0 1");
+        Assertions.assertTrue(promotion.isLegalMove(new ChessMove("e7e8n")));
+        Assertions.assertFalse(promotion.isLegalMove(new ChessMove("e7e8")));
+        Assertions.assertFalse(promotion.isLegalMove(new ChessMove(new ChessPosition(7, 5), new ChessPosition(8, 5),
+                ChessPiece.PieceType.KING)));
+    }
+}
@@ -0,0 +1,63 @@
+package chess;
+
+import jdk.jfr.Description;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PackedMoveTests {
+
+    @Test
+    @Description("Every legal move of the reference positions survives packing and unpacking")
+    public void roundTripTest() {
+        for (var position : Perft.POSITIONS) {
+            var game = Fen.parse(position.fen());
+            for (var move : Perft.legalMoves(game)) {
+                var packed = PackedMove.fromChessMove(game.getBoard(), move);
+                Assertions.assertEquals(packed & 0xFFFF, packed);
+                Assertions.assertEquals(move, PackedMove.toChessMove(packed), position.name());
+            }
+        }
+    }
+
+    @Test
+    @Description("Flags identify captures, castles, double pushes, en passant and promotions")
+    public void flagsTest() throws Exception {
+        var board = Fen.parse("r3k2r/1P6/8/3pP3/8/8/P7/R3K2R w KQkq d6 0 1").getBoard();
+        Assertions.assertEquals(PackedMove.KING_CASTLE, PackedMove.flags(PackedMove.fromChessMove(board, new ChessMove("e1g1"))));
+        Assertions.assertEquals(PackedMove.QUEEN_CASTLE, PackedMove.flags(PackedMove.fromChessMove(board, new ChessMove("e1c1"))));
+        Assertions.assertEquals(PackedMove.DOUBLE_PAWN_PUSH, PackedMove.flags(PackedMove.fromChessMove(board, new ChessMove("a2a4"))));
+        Assertions.assertEquals(PackedMove.EN_PASSANT, PackedMove.flags(PackedMove.fromChessMove(board, new ChessMove("e5d6"))));
+        Assertions.assertEquals(PackedMove.CAPTURE, PackedMove.flags(PackedMove.fromChessMove(board, new ChessMove("a1a8"))));
+        Assertions.assertEquals(PackedMove.QUIET, PackedMove.flags(PackedMove.fromChessMove(board, new ChessMove("a2a3"))));
+
+        var promotion = PackedMove.fromChessMove(board, new ChessMove("b7a8n"));
+        Assertions.assertTrue(PackedMove.isPromotion(promotion));
+        Assertions.assertTrue(PackedMove.isCapture(promotion));
+        Assertions.assertEquals(ChessPiece.PieceType.KNIGHT, PackedMove.promotion(promotion));
+        Assertions.assertEquals("b7a8n", PackedMove.toString(promotion));
+    }
+
+    @Test
+    @Description("Move lists grow past their initial capacity and keep their array when cleared")
+    public void moveListTest() {
+        var list = new MoveList(2);
+        for (var i = 0; i < 10; i++) {
+            list.add(PackedMove.of(i, i + 8, PackedMove.QUIET));
+        }
+        Assertions.assertEquals(10, list.size());
+        Assertions.assertTrue(list.contains(PackedMove.of(3, 11, PackedMove.QUIET)));
+        Assertions.assertEquals(new ChessMove(new ChessPosition(1, 1), new ChessPosition(2, 1), null), list.toChessMoves().getFirst());
+        list.clear();
+        Assertions.assertTrue(list.isEmpty());
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> list.get(0));
+    }
+
+    @Test
+    @Description("An empty move list can still grow, and a negative capacity is rejected")
+    public void moveListCapacityTest() {
+        var list = new MoveList(0);
+        list.add(PackedMove.of(8, 16, PackedMove.QUIET));
+        Assertions.assertEquals(1, list.size());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new MoveList(-1));
+    }
+}
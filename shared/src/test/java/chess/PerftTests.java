@@ -0,0 +1,86 @@
+package chess;
+
+import jdk.jfr.Description;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PerftTests {
+    private static final long MAX_NODES = 100_000;
+
+    @Test
+    @Description("Node counts of the reference positions match the published values")
+    public void referencePositionsTest() {
+        for (var position : Perft.POSITIONS) {
+            var game = Fen.parse(position.fen());
+            for (var depth = 1; depth <= position.nodes().length; depth++) {
+                var expected = position.nodes()[depth - 1];
+                if (expected > MAX_NODES) {
+                    break;
+                }
+                Assertions.assertEquals(expected, Perft.perft(game, depth), position.name() + " depth " + depth);
+            }
+        }
+    }
+
+    @Test
+    @Description("Searching leaves the game in the position it started in")
+    public void searchRestoresPositionTest() {
+        for (var position : Perft.POSITIONS) {
+            var game = Fen.parse(position.fen());
+            var key = game.positionKey();
+            Perft.perft(game, 3);
+            Assertions.assertEquals(key, game.positionKey(), position.name());
+            Assertions.assertEquals(Fen.format(Fen.parse(position.fen())), Fen.format(game), position.name());
+        }
+    }
+
+    @Test
+    @Description("Divide sums to the perft count, with and without threads")
+    public void divideTest() {
+        var game = Fen.parse(Perft.POSITIONS.get(1).fen());
+        var single = Perft.divide(game, 2);
+        var threaded = Perft.divide(game, 2, 4);
+        Assertions.assertEquals(48, single.size());
+        Assertions.assertEquals(single, threaded);
+        Assertions.assertEquals(2_039, single.values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test
+    @Description("Incrementally updated position keys match keys computed from scratch")
+    public void positionKeyTest() {
+        var game = Fen.parse(Perft.POSITIONS.get(1).fen());
+        for (var move : Perft.legalMoves(game)) {
+            game.getBoard().makeMove(move);
+            game.setTeamTurn(game.getTeamTurn().opponent());
+            Assertions.assertEquals(Fen.parse(Fen.format(game)).positionKey(), game.positionKey(), move.toString());
+            game.getBoard().unmakeMove();
+            game.setTeamTurn(game.getTeamTurn().opponent());
+        }
+    }
+
+    @Test
+    @Description("Malformed en passant squares are rejected as invalid FEN")
+    public void invalidSquareTest() {
+        for (var square : new String[]{"e9", "z3", "e0", "`3", "e33"}) {
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> Fen.parse("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq " + square + " 0 1"), square);
+        }
+    }
+
+    @Test
+    @Description("Boards that don't cover exactly eight ranks of eight files are rejected as invalid FEN")
+    public void invalidBoardTest() {
+        var boards = new String[]{
+                "rnbqkbnr/pppppppp/9/8/8/8/PPPPPPPP/RNBQKBNR",
+                "rnbqkbnr/pppppppp/0/8/8/8/PPPPPPPP/RNBQKBNR",
+                "rnbqkbnr/pppppppp/45/8/8/8/PPPPPPPP/RNBQKBNR",
+                "rnbqkbnr/pppppppp/7/8/8/8/PPPPPPPP/RNBQKBNR",
+                "rnbqkbnr/ppppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR",
+                "rnbqkbnr/pppppppp/8/8/8/PPPPPPPP/RNBQKBNR",
+                "rnbqkbnr/pppppppp/8/8/8/8/8/PPPPPPPP/RNBQKBNR",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBN"};
+        for (var board : boards) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> Fen.parse(board + " w KQkq - 0 1"), board);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package websocket.messages;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import com.google.gson.Gson;
+import jdk.jfr.Description;
+import model.GameData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MoveAppliedMessageTests {
+
+    @Test
+    @Description("A client copy that plays the delta reaches the server's position key")
+    public void applyDeltaTest() throws Exception {
+        var server = new ChessGame();
+        var client = new Gson().fromJson(new Gson().toJson(server), ChessGame.class);
+
+        for (var text : "e2e4 d7d5 e4d5 c7c6 d5c6 g8f6 c6b7 e7e6 b7a8q".split(" ")) {
+            var move = new ChessMove(text);
+            server.makeMove(move);
+            var gameData = new GameData(7, "white", "black", "delta", server, GameData.State.UNDECIDED);
+            var json = new MoveAppliedMessage(gameData, move).toString();
+
+            Assertions.assertEquals(ServerMessage.ServerMessageType.MOVE_APPLIED, new Gson().fromJson(json, ServerMessage.class).getType());
+            var message = new Gson().fromJson(json, MoveAppliedMessage.class);
+            Assertions.assertEquals(client.getBoard().getHistory().size() + 1, message.ply);
+            client.makeMove(message.getMove());
+            Assertions.assertEquals(message.positionKey, MoveAppliedMessage.positionKey(client), text);
+        }
+    }
+
+    @Test
+    @Description("A client copy that diverged from the server no longer matches the position key")
+    public void mismatchTest() throws Exception {
+        var server = new ChessGame();
+        var client = new ChessGame();
+        server.makeMove(new ChessMove("g1f3"));
+        server.makeMove(new ChessMove("g8f6"));
+        var move = new ChessMove("b1c3");
+        server.makeMove(move);
+
+        var message = new MoveAppliedMessage(new GameData(7, null, null, "delta", server, GameData.State.UNDECIDED), move);
+        Assertions.assertEquals(3, message.ply);
+        client.makeMove(new ChessMove("h2h3"));
+        client.makeMove(new ChessMove("g8f6"));
+        client.makeMove(message.getMove());
+        Assertions.assertNotEquals(message.positionKey, MoveAppliedMessage.positionKey(client));
+    }
+}